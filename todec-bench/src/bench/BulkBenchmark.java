@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.ByteBuilder;
+import math.DoubleToDecimal;
+import math.FloatToDecimal;
+import math.ParallelToDecimal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/*
+Benchmarks of the renderings of whole arrays into separated sequences of
+bytes, sequentially and in parallel.
+The scores are in ns/rendering.
+The baselines join the results of Double.toString() and Float.toString()
+in a StringBuilder, then encode it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class BulkBenchmark {
+
+    private static final int N = 1 << 20;
+    private static final long SEED = 0x5EED_B01CL;
+    private static final String SEP = ", ";
+
+    @Param({"nonNaN", "integers", "milli", "micro"})
+    private String distribution;
+
+    private final double[] d = new double[N];
+    private final float[] f = new float[N];
+    private final ByteBuilder bb = new ByteBuilder();
+    private final StringBuilder sb = new StringBuilder();
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setup() {
+        D2DBenchmark.prepare(d, distribution, new Random(SEED));
+        F2DBenchmark.prepare(f, distribution, new Random(SEED));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] baselineDoubles() {
+        sb.setLength(0);
+        for (int i = 0; i < N; ++i) {
+            if (i > 0) {
+                sb.append(SEP);
+            }
+            sb.append(Double.toString(d[i]));
+        }
+        return sb.toString().getBytes(ISO_8859_1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toBytesDoubles() {
+        return DoubleToDecimal.toBytes(d, 0, N, SEP, bb.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder parallelToBytesDoubles() {
+        return ParallelToDecimal.toBytes(d, 0, N, SEP, bb.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void parallelWriteToDoubles() throws IOException {
+        ParallelToDecimal.writeTo(d, 0, N, SEP, out,
+                ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] baselineFloats() {
+        sb.setLength(0);
+        for (int i = 0; i < N; ++i) {
+            if (i > 0) {
+                sb.append(SEP);
+            }
+            sb.append(Float.toString(f[i]));
+        }
+        return sb.toString().getBytes(ISO_8859_1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toBytesFloats() {
+        return FloatToDecimal.toBytes(f, 0, N, SEP, bb.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder parallelToBytesFloats() {
+        return ParallelToDecimal.toBytes(f, 0, N, SEP, bb.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void parallelWriteToFloats() throws IOException {
+        ParallelToDecimal.writeTo(f, 0, N, SEP, out,
+                ForkJoinPool.commonPool());
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.DoubleToDecimal;
+import math.ToDecimalCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Benchmarks of ToDecimalCache in front of DoubleToDecimal.toString().
+In the "skewed" distributions, a fraction of the values, given by the
+percentage in the name, is drawn from 128 recurring values, like 0.0,
+1.0, small integers and percentages, and the rest are random doubles.
+In "uniform", all values are random doubles, so the cache only adds
+its overhead. There are many more random doubles than slots, so they
+hardly ever recur while still cached, as in a stream.
+The "threads" benchmarks share one cache among 4 threads.
+The secondary "hits" and "misses" scores show the effectiveness.
+The scores are in ns/rendering.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    private static final int N = 1 << 16;
+    private static final long SEED = 0x5EED_CAC4EL;
+
+    @Param({"skewed99", "skewed90", "skewed50", "uniform"})
+    private String distribution;
+
+    @Param({"256", "4096"})
+    private int size;
+
+    private final double[] x = new double[N];
+    private ToDecimalCache cache;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long hits;
+        public long misses;
+
+    }
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        double[] common = new double[128];
+        for (int i = 0; i < common.length; ++i) {
+            common[i] = i < 64 ? i : (i - 64) / 100.0;
+        }
+        int percent = distribution.equals("uniform")
+                ? 0
+                : Integer.parseInt(distribution.substring("skewed".length()));
+        for (int i = 0; i < N; ++i) {
+            if (r.nextInt(100) < percent) {
+                // A few common values dominate: 1/2 of them are the first 8
+                int k = r.nextBoolean() ? r.nextInt(8) : r.nextInt(128);
+                x[i] = common[k];
+            } else {
+                double v;
+                do {
+                    v = Double.longBitsToDouble(r.nextLong());
+                } while (v != v);
+                x[i] = v;
+            }
+        }
+        cache = new ToDecimalCache(size);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void uncached(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toString(v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void cached(Blackhole bh, Counters c) {
+        long hits = cache.hits();
+        long misses = cache.misses();
+        for (double v : x) {
+            bh.consume(cache.toString(v));
+        }
+        c.hits += cache.hits() - hits;
+        c.misses += cache.misses() - misses;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    @Threads(4)
+    public void uncachedThreads(Blackhole bh) {
+        uncached(bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    @Threads(4)
+    public void cachedThreads(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(cache.toString(v));
+        }
+    }
+
+}
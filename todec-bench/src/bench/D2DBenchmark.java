@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2018, Raffaello Giulietti. All rights reserved.
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -21,137 +21,237 @@
 
 package bench;
 
+import math.Decimal;
 import math.DoubleToDecimal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
 
-import java.text.DecimalFormat;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
-
-import static java.lang.Math.rint;
+import java.util.concurrent.TimeUnit;
 
 /*
-Some simple benchmarks to evaluate speeds.
+Benchmarks of the renderings of single doubles, one per output API.
+Each invocation renders all the N values of the selected distribution,
+so the scores are in ns/rendering.
+Double.toString() is the baseline.
  */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
 public class D2DBenchmark {
 
-    private static final int N = 100_000_000;
-    private static final double[] x = new double[N];
-    private static final DecimalFormat intFormat =
-            new DecimalFormat("#,##0");
-    private static final int RUNS_PER_ARRAY = 5;
-    private static final int ARRAYS_PER_MAIN = 5;
-    private static Random r;
+    static final int N = 1 << 10;
+    private static final long SEED = 0x5EED_D2DL;
+
+    @Param({"nonNaN", "integers", "milli", "micro"})
+    private String distribution;
 
-    private static final boolean CHECK_BACK_CONVERSION = false;
+    private final double[] x = new double[N];
+    private final byte[] bytes = new byte[DoubleToDecimal.MAX_CHARS];
+    private final byte[] fixed = new byte[DoubleToDecimal.MAX_FIXED_CHARS];
+    private final ByteBuffer heap =
+            ByteBuffer.allocate(DoubleToDecimal.MAX_CHARS);
+    private final ByteBuffer direct =
+            ByteBuffer.allocateDirect(DoubleToDecimal.MAX_CHARS);
+    private final StringBuilder sb =
+            new StringBuilder(DoubleToDecimal.MAX_CHARS);
+    private final CharBuffer cb =
+            CharBuffer.allocate(DoubleToDecimal.MAX_CHARS);
+    private final Decimal dec = new Decimal();
+
+    @Setup
+    public void setup() {
+        prepare(x, distribution, new Random(SEED));
+    }
 
-    public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("arguments");
-            System.out.println("  [ <seed> ]");
-            System.out.println();
+    static void prepare(double[] x, String distribution, Random r) {
+        switch (distribution) {
+            case "nonNaN":
+                int i = 0;
+                while (i < x.length) {
+                    double v = Double.longBitsToDouble(r.nextLong());
+                    if (v == v) {
+                        x[i++] = v;
+                    }
+                }
+                break;
+            case "integers":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt();
+                }
+                break;
+            case "milli":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt() / 1e3;
+                }
+                break;
+            case "micro":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt() / 1e6;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(distribution);
         }
-        Long seed = args.length > 0 ? Long.parseLong(args[0]) : null;
-        r = seed != null ? new Random(seed) : new Random();
-//        micro();
-//        milli();
-//        integers();
-        for (int i = 0; i < ARRAYS_PER_MAIN; ++i)
-            nonNaNRange();
     }
 
-    private static void benchmark() {
-        for (int i = 1; i <= RUNS_PER_ARRAY; ++i) {
-            benchmarkD2d(i);
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineToString(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(Double.toString(v));
         }
     }
 
-    private static void micro() {
-        prepareMicro();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toString(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toString(v));
+        }
     }
 
-    private static void milli() {
-        prepareMilli();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesArray(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toBytes(v, bytes, 0));
+        }
+        bh.consume(bytes);
     }
 
-    private static void integers() {
-        prepareIntegers();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesHeapBuffer(Blackhole bh) {
+        for (double v : x) {
+            heap.clear();
+            bh.consume(DoubleToDecimal.toBytes(v, heap));
+        }
     }
 
-    private static void nonNaNRange() {
-        prepareNonNaNDoubles();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesDirectBuffer(Blackhole bh) {
+        for (double v : x) {
+            direct.clear();
+            bh.consume(DoubleToDecimal.toBytes(v, direct));
+        }
     }
 
-    private static void prepareIntegers() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " integer random doubles... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineAppendStringBuilder(Blackhole bh) {
+        for (double v : x) {
+            sb.setLength(0);
+            bh.consume(sb.append(v).length());
         }
-        System.out.println("finished");
     }
 
-    private static void prepareMilli() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " \"milli\" random doubles... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt() / 1e3;
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void appendToStringBuilder(Blackhole bh) {
+        for (double v : x) {
+            sb.setLength(0);
+            bh.consume(DoubleToDecimal.appendTo(sb, v).length());
         }
-        System.out.println("finished");
     }
 
-    private static void prepareMicro() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " \"micro\" random doubles... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt() / 1e6;
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void appendToAppendable(Blackhole bh) throws IOException {
+        for (double v : x) {
+            cb.clear();
+            bh.consume(DoubleToDecimal.appendTo(cb, v));
         }
-        System.out.println("finished");
     }
 
-    private static void prepareNonNaNDoubles() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " non NaN random doubles... ");
-        System.out.flush();
-        int i = 0;
-        while (i < x.length) {
-            double v = Double.longBitsToDouble(r.nextLong());
-            if (v == v) {
-                x[i++] = v;
-            }
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void split(Blackhole bh) {
+        for (double v : x) {
+            DoubleToDecimal.split(v, dec);
+            bh.consume(dec.significand());
+            bh.consume(dec.exponent());
         }
-        System.out.println("finished");
     }
 
-    private static void benchmarkD2d(int take) {
-        long tot = 0;
-        long begin = System.nanoTime();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void length(Blackhole bh) {
         for (double v : x) {
-            String s = DoubleToDecimal.toString(v);
-            if (CHECK_BACK_CONVERSION) {
-                if (v == v && Double.parseDouble(s) != v) {
-                    throw new AssertionError(v + " " + s);
-                }
-            }
-            tot += s.length();
+            bh.consume(DoubleToDecimal.length(v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long lengthBulk() {
+        return DoubleToDecimal.length(x, 0, N);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toEcmaString(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toEcmaString(v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toJsonString(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toJsonString(v));
         }
-        long ns = System.nanoTime() - begin;
-        print(take, ns, tot);
     }
 
-    private static void print(int take, long ns, long tot) {
-        System.out.println("[" + take + "/" + RUNS_PER_ARRAY + "]");
-        System.out.println("--------");
-        System.out.println("n=" + intFormat.format(x.length));
-        System.out.println("elapsed=" + intFormat.format(ns) + " ns");
-        System.out.println(intFormat.format((int) rint((double) ns / x.length)) + " ns/rendering");
-        System.out.println("total length of output=" + intFormat.format(tot));
-        System.out.println();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineFormat6g(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(String.format("%.6g", v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toStringPrecision6(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toString(v, 6, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineFormat2f(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(String.format("%.2f", v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toFixedString2(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toFixedString(v, 2,
+                    RoundingMode.HALF_EVEN));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toFixedBytes2(Blackhole bh) {
+        for (double v : x) {
+            bh.consume(DoubleToDecimal.toFixedBytes(v, fixed, 0, 2,
+                    RoundingMode.HALF_EVEN));
+        }
     }
 
 }
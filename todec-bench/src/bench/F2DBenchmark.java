@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2018, Raffaello Giulietti. All rights reserved.
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -21,137 +21,221 @@
 
 package bench;
 
+import math.Decimal;
 import math.FloatToDecimal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
 
-import java.text.DecimalFormat;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
-
-import static java.lang.Math.rint;
+import java.util.concurrent.TimeUnit;
 
 /*
-Some simple benchmarks to evaluate speeds.
+Benchmarks of the renderings of single floats, one per output API.
+Each invocation renders all the N values of the selected distribution,
+so the scores are in ns/rendering.
+Float.toString() is the baseline.
  */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
 public class F2DBenchmark {
 
-    private static final int N = 100_000_000;
-    private static final float[] x = new float[N];
-    private static final DecimalFormat intFormat =
-            new DecimalFormat("#,##0");
-    private static final int RUNS_PER_ARRAY = 5;
-    private static final int ARRAYS_PER_MAIN = 5;
-    private static Random r;
+    static final int N = 1 << 10;
+    private static final long SEED = 0x5EED_F2DL;
+
+    @Param({"nonNaN", "integers", "milli", "micro"})
+    private String distribution;
+
+    private final float[] x = new float[N];
+    private final byte[] bytes = new byte[FloatToDecimal.MAX_CHARS];
+    private final byte[] fixed = new byte[FloatToDecimal.MAX_FIXED_CHARS];
+    private final ByteBuffer heap =
+            ByteBuffer.allocate(FloatToDecimal.MAX_CHARS);
+    private final ByteBuffer direct =
+            ByteBuffer.allocateDirect(FloatToDecimal.MAX_CHARS);
+    private final StringBuilder sb =
+            new StringBuilder(FloatToDecimal.MAX_CHARS);
+    private final CharBuffer cb =
+            CharBuffer.allocate(FloatToDecimal.MAX_CHARS);
+    private final Decimal dec = new Decimal();
+
+    @Setup
+    public void setup() {
+        prepare(x, distribution, new Random(SEED));
+    }
 
-    private static final boolean CHECK_BACK_CONVERSION = false;
+    static void prepare(float[] x, String distribution, Random r) {
+        switch (distribution) {
+            case "nonNaN":
+                int i = 0;
+                while (i < x.length) {
+                    float v = Float.intBitsToFloat(r.nextInt());
+                    if (v == v) {
+                        x[i++] = v;
+                    }
+                }
+                break;
+            case "integers":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt();
+                }
+                break;
+            case "milli":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt() / 1e3F;
+                }
+                break;
+            case "micro":
+                for (int k = 0; k < x.length; ++k) {
+                    x[k] = r.nextInt() / 1e6F;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(distribution);
+        }
+    }
 
-    public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("arguments");
-            System.out.println("  [ <seed> ]");
-            System.out.println();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineToString(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(Float.toString(v));
         }
-        Long seed = args.length > 0 ? Long.parseLong(args[0]) : null;
-        r = seed != null ? new Random(seed) : new Random();
-//        micro();
-//        milli();
-//        integers();
-        for (int i = 0; i < ARRAYS_PER_MAIN; ++i)
-            nonNaNRange();
     }
 
-    private static void benchmark() {
-        for (int i = 1; i <= RUNS_PER_ARRAY; ++i) {
-            benchmarkD2d(i);
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toString(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.toString(v));
         }
     }
 
-    private static void micro() {
-        prepareMicro();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesArray(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.toBytes(v, bytes, 0));
+        }
+        bh.consume(bytes);
     }
 
-    private static void milli() {
-        prepareMilli();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesHeapBuffer(Blackhole bh) {
+        for (float v : x) {
+            heap.clear();
+            bh.consume(FloatToDecimal.toBytes(v, heap));
+        }
     }
 
-    private static void integers() {
-        prepareIntegers();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytesDirectBuffer(Blackhole bh) {
+        for (float v : x) {
+            direct.clear();
+            bh.consume(FloatToDecimal.toBytes(v, direct));
+        }
     }
 
-    private static void nonNaNRange() {
-        prepareNonNaNDoubles();
-        benchmark();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineAppendStringBuilder(Blackhole bh) {
+        for (float v : x) {
+            sb.setLength(0);
+            bh.consume(sb.append(v).length());
+        }
     }
 
-    private static void prepareIntegers() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " integer random floats... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void appendToStringBuilder(Blackhole bh) {
+        for (float v : x) {
+            sb.setLength(0);
+            bh.consume(FloatToDecimal.appendTo(sb, v).length());
         }
-        System.out.println("finished");
     }
 
-    private static void prepareMilli() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " \"milli\" random floats... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt() / 1e3F;
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void appendToAppendable(Blackhole bh) throws IOException {
+        for (float v : x) {
+            cb.clear();
+            bh.consume(FloatToDecimal.appendTo(cb, v));
         }
-        System.out.println("finished");
     }
 
-    private static void prepareMicro() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " \"micro\" random floats... ");
-        System.out.flush();
-        for (int i = 0; i < x.length; ++i) {
-            x[i] = r.nextInt() / 1e6F;
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void split(Blackhole bh) {
+        for (float v : x) {
+            FloatToDecimal.split(v, dec);
+            bh.consume(dec.significand());
+            bh.consume(dec.exponent());
         }
-        System.out.println("finished");
     }
 
-    private static void prepareNonNaNDoubles() {
-        System.out.print("generating " + intFormat.format(x.length)
-                + " non NaN random floats... ");
-        System.out.flush();
-        int i = 0;
-        while (i < x.length) {
-            float v = Float.intBitsToFloat(r.nextInt());
-            if (v == v) {
-                x[i++] = v;
-            }
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void length(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.length(v));
         }
-        System.out.println("finished");
     }
 
-    private static void benchmarkD2d(int take) {
-        long tot = 0;
-        long begin = System.nanoTime();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public long lengthBulk() {
+        return FloatToDecimal.length(x, 0, N);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineFormat6g(Blackhole bh) {
         for (float v : x) {
-            String s = FloatToDecimal.toString(v);
-            if (CHECK_BACK_CONVERSION) {
-                if (v == v && Float.parseFloat(s) != v) {
-                    throw new AssertionError(v + " " + s);
-                }
-            }
-            tot += s.length();
+            bh.consume(String.format("%.6g", v));
         }
-        long ns = System.nanoTime() - begin;
-        print(take, ns, tot);
     }
 
-    private static void print(int take, long ns, long tot) {
-        System.out.println("[" + take + "/" + RUNS_PER_ARRAY + "]");
-        System.out.println("--------");
-        System.out.println("n=" + intFormat.format(x.length));
-        System.out.println("elapsed=" + intFormat.format(ns) + " ns");
-        System.out.println(intFormat.format((int) rint((double) ns / x.length)) + " ns/rendering");
-        System.out.println("total length of output=" + intFormat.format(tot));
-        System.out.println();
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toStringPrecision6(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.toString(v, 6, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineFormat2f(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(String.format("%.2f", v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toFixedString2(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.toFixedString(v, 2,
+                    RoundingMode.HALF_EVEN));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toFixedBytes2(Blackhole bh) {
+        for (float v : x) {
+            bh.consume(FloatToDecimal.toFixedBytes(v, fixed, 0, 2,
+                    RoundingMode.HALF_EVEN));
+        }
     }
 
 }
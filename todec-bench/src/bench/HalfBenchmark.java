@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.BFloat16ToDecimal;
+import math.ByteBuilder;
+import math.FloatToDecimal;
+import math.HalfToDecimal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Benchmarks of the renderings of random, non-NaN binary16 and bfloat16
+values.
+The baselines widen to float and render the float, which is what callers
+do absent a binary16 renderer, and which is longer in most cases.
+The scores are in ns/rendering.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class HalfBenchmark {
+
+    private static final int N = 1 << 10;
+    private static final long SEED = 0x5EED_F16L;
+
+    private final short[] x = new short[N];
+    private final short[] y = new short[N];
+    private final byte[] bytes = new byte[FloatToDecimal.MAX_CHARS];
+    private final ByteBuilder bb = new ByteBuilder();
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        int i = 0;
+        while (i < N) {
+            short v = (short) r.nextInt();
+            if ((v & 0x7C00) != 0x7C00 || (v & 0x3FF) == 0) {
+                x[i++] = v;
+            }
+        }
+        i = 0;
+        while (i < N) {
+            short v = (short) r.nextInt();
+            if ((v & 0x7F80) != 0x7F80 || (v & 0x7F) == 0) {
+                y[i++] = v;
+            }
+        }
+    }
+
+    // Exact widening of the finite or infinite binary16 v.
+    private static float widen(short v) {
+        int bq = v >>> 10 & 0x1F;
+        int c = v & 0x3FF;
+        float f = bq == 0x1F ? Float.POSITIVE_INFINITY
+                : bq == 0 ? Math.scalb((float) c, -24)
+                : Math.scalb((float) (c | 0x400), bq - 25);
+        return v < 0 ? -f : f;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineWidenToString(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(Float.toString(widen(v)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void widenToBytes(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(FloatToDecimal.toBytes(widen(v), bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toString(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(HalfToDecimal.toString(v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toBytes(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(HalfToDecimal.toBytes(v, bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toBytesBulk() {
+        return HalfToDecimal.toBytes(x, 0, N, ",", bb.clear());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void baselineWidenToStringBFloat16(Blackhole bh) {
+        for (short v : y) {
+            bh.consume(Float.toString(Float.intBitsToFloat(v << 16)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void toStringBFloat16(Blackhole bh) {
+        for (short v : y) {
+            bh.consume(BFloat16ToDecimal.toString(v));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toBytesBulkBFloat16() {
+        return BFloat16ToDecimal.toBytes(y, 0, N, ",", bb.clear());
+    }
+
+}
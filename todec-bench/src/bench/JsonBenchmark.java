@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.ByteBuilder;
+import math.DoubleToDecimal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Benchmarks of the renderings of double arrays as JSON arrays, in the
+format of toString(), of ECMAScript and of the compact JSON format.
+The scores are in ns/value. The secondary "bytes" and "values" scores are
+the totals output and rendered, so that the formats can be compared by
+their bytes per value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    private static final int N = 1 << 16;
+    private static final long SEED = 0x5EED_B01CL;
+    private static final String SEP = ",";
+
+    @Param({"nonNaN", "integers", "milli", "micro"})
+    private String distribution;
+
+    private final double[] x = new double[N];
+    private final ByteBuilder bb = new ByteBuilder();
+    private final byte[] bytes = new byte[DoubleToDecimal.MAX_ECMA_CHARS];
+
+    /*
+    The total numbers of bytes output and of values rendered, summed over
+    the measurement iterations. Their ratio is the bytes per value,
+    separators included.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Output {
+
+        public long bytes;
+        public long values;
+
+        void add(ByteBuilder bb) {
+            bytes += bb.length();
+            values += N;
+        }
+
+    }
+
+    @Setup
+    public void setup() {
+        D2DBenchmark.prepare(x, distribution, new Random(SEED));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toBytes(Output out) {
+        DoubleToDecimal.toBytes(x, 0, N, SEP, bb.clear());
+        out.add(bb);
+        return bb;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toEcmaBytes(Output out) {
+        bb.clear();
+        for (int i = 0; i < N; ++i) {
+            if (i > 0) {
+                bb.append((byte) ',');
+            }
+            int len = DoubleToDecimal.toEcmaBytes(x[i], bytes, 0);
+            bb.append(bytes, 0, len);
+        }
+        out.add(bb);
+        return bb;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public ByteBuilder toJsonBytes(Output out) {
+        DoubleToDecimal.toJsonBytes(x, 0, N, SEP, bb.clear());
+        out.add(bb);
+        return bb;
+    }
+
+}
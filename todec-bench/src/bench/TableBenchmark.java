@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.DoubleToDecimal;
+import math.HalfToDecimal;
+import math.TableToDecimal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+Benchmarks of the table lookups of TableToDecimal against the renderers,
+on random binary16 values and on random integers in the table's domain.
+The scores are in ns/rendering.
+The firstUse* benchmarks measure the single, cold call that builds a table
+in a fresh JVM, in ms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class TableBenchmark {
+
+    private static final int N = 1 << 10;
+    private static final long SEED = 0x5EED_7AB1EL;
+
+    private final short[] x = new short[N];
+    private final double[] y = new double[N];
+    private final byte[] bytes = new byte[DoubleToDecimal.MAX_CHARS];
+    private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(DoubleToDecimal.MAX_CHARS);
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        for (int i = 0; i < N; ++i) {
+            x[i] = (short) r.nextInt();
+            y[i] = r.nextInt(2 * TableToDecimal.MAX_INTEGER + 1)
+                    - TableToDecimal.MAX_INTEGER;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void halfRendered(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(HalfToDecimal.toBytes(v, bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void halfTable(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(TableToDecimal.toBytes(v, bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void halfTableBuffer(Blackhole bh) {
+        for (short v : x) {
+            bh.consume(TableToDecimal.toBytes(v, buffer.clear()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void integerRendered(Blackhole bh) {
+        for (double v : y) {
+            bh.consume(DoubleToDecimal.toBytes(v, bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void integerTable(Blackhole bh) {
+        for (double v : y) {
+            bh.consume(TableToDecimal.toBytes(v, bytes, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void integerTableBuffer(Blackhole bh) {
+        for (double v : y) {
+            bh.consume(TableToDecimal.toBytes(v, buffer.clear()));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public int firstUseHalf() {
+        return TableToDecimal.toBytes((short) 0x3C00, bytes, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public int firstUseInteger() {
+        return TableToDecimal.toBytes(1.0, bytes, 0);
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package bench;
+
+import math.DoubleToDecimal;
+import math.ThreadLocalDoubleToDecimal;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Renders doubles on a million short-lived virtual threads, one thread per
+task, as a request handling server would.
+The scores are in ns/task, thread creation and scheduling included.
+
+statelessToString() uses the renderer as is. threadLocalToString()
+uses ThreadLocalDoubleToDecimal, a copy of the former renderer, which
+kept an instance in a ThreadLocal: every thread initializes and looks up
+its own instance and scratch array.
+Run with -prof gc to compare the footprints, as gc.alloc.rate.norm.
+
+Virtual threads need JDK 21 or later, while the suite is compiled for an
+earlier release, so the executor is looked up reflectively. On earlier
+JDKs these benchmarks fail in their setup. Select a JDK with the -jvm
+option of JMH.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(3)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    private static final int THREADS = 1_000_000;
+    private static final int RENDERINGS_PER_THREAD = 4;
+    private static final long SEED = 0x5EED_7EADL;
+
+    @Param({"nonNaN", "milli"})
+    private String distribution;
+
+    private final double[] x = new double[D2DBenchmark.N];
+    private final LongAdder total = new LongAdder();
+    private MethodHandle newExecutor;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        D2DBenchmark.prepare(x, distribution, new Random(SEED));
+        newExecutor = MethodHandles.publicLookup().findStatic(
+                Executors.class,
+                "newVirtualThreadPerTaskExecutor",
+                MethodType.methodType(ExecutorService.class));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(THREADS)
+    public long statelessToString() throws Throwable {
+        return run(i -> {
+            long len = 0;
+            for (int k = 0; k < RENDERINGS_PER_THREAD; ++k) {
+                len += DoubleToDecimal.toString(value(i + k)).length();
+            }
+            return len;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(THREADS)
+    public long threadLocalToString() throws Throwable {
+        return run(i -> {
+            long len = 0;
+            for (int k = 0; k < RENDERINGS_PER_THREAD; ++k) {
+                len += ThreadLocalDoubleToDecimal.toString(value(i + k))
+                        .length();
+            }
+            return len;
+        });
+    }
+
+    private interface Task {
+        long render(int i);
+    }
+
+    private double value(int i) {
+        return x[i & D2DBenchmark.N - 1];
+    }
+
+    private long run(Task task) throws Throwable {
+        total.reset();
+        ExecutorService executor = (ExecutorService) newExecutor.invoke();
+        for (int t = 0; t < THREADS; ++t) {
+            int i = t * RENDERINGS_PER_THREAD;
+            executor.execute(() -> total.add(task.render(i)));
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("tasks did not terminate");
+        }
+        return total.sum();
+    }
+
+}
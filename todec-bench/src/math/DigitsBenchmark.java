@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.multiplyHigh;
+
+/*
+Benchmarks of the extraction of 8 digits at once, in the lanes of a long
+(SWAR, SIMD within a register), as by MathUtils.digits8(), against the
+scalar extraction of one digit after the other it replaced in the
+renderers. Both lay out the digits of a whole array of random integers
+back to back, as the bulk renderings do, one group of 8 per integer.
+The scores are in ns/group.
+
+This class is in package math to reach MathUtils. The effect on the
+renderings as a whole shows in BulkBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class DigitsBenchmark {
+
+    private static final int N = 1 << 12;
+    private static final long SEED = 0x5EED_D161L;
+
+    // Used for the scalar digits extraction.
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    private final int[] m = new int[N];
+    private final byte[] buf = new byte[8 * N];
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        for (int i = 0; i < N; ++i) {
+            m[i] = r.nextInt(100_000_000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] scalar() {
+        int index = -1;
+        for (int v : m) {
+            // As in the former append8Digits() of the renderers
+            int y = y(v);
+            for (int i = 0; i < 8; ++i) {
+                int t = 10 * y;
+                buf[++index] = (byte) ('0' + (t >>> 28));
+                y = t & MASK_28;
+            }
+        }
+        return buf;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public byte[] swar() {
+        int index = -1;
+        for (int v : m) {
+            MathUtils.setLong(buf, index + 1, MathUtils.digits8(v));
+            index += 8;
+        }
+        return buf;
+    }
+
+    // Computes floor((m + 1) 2^28 / 10^8) - 1, as in the renderers
+    private static int y(int m) {
+        return (int) (multiplyHigh(
+                (long) (m + 1) << 28,
+                48_357_032_784_585_167L) >>> 18) - 1;
+    }
+
+}
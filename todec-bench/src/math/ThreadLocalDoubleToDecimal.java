@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import static java.lang.Double.*;
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.multiplyHigh;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static math.MathUtils.*;
+
+/**
+ * The renderer of {@link DoubleToDecimal} as it was before its state was
+ * dropped, when each thread kept its own instance in a {@link ThreadLocal}.
+ * Only {@link #toString(double)} is retained.
+ *
+ * <p>This is a baseline for the benchmarks, not part of the library.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class ThreadLocalDoubleToDecimal {
+    /*
+    For full details about this code see the following references:
+
+    [1] Giulietti, "The Schubfach way to render doubles",
+        https://drive.google.com/open?id=1KLtG_LaIbK9ETXI290zqCxvBW94dj058
+
+    [2] IEEE Computer Society, "IEEE Standard for Floating-Point Arithmetic"
+
+    [3] Moeller & Granlund, "Improved division by invariant integers"
+
+    [4] Bouvier & Zimmermann, "Division-Free Binary-to-Decimal Conversion"
+     */
+
+    // The precision in bits.
+    private static final int P = 53;
+
+    // Exponent width in bits.
+    private static final int W = (Double.SIZE - 1) - (P - 1);
+
+    // Minimum value of the exponent: -(2^(W-1)) - P + 3.
+    private static final int Q_MIN = (-1 << W - 1) - P + 3;
+
+    // Minimum value of the significand of a normal value: 2^(P-1).
+    private static final long C_MIN = 1L << P - 1;
+
+    // Mask to extract the biased exponent.
+    private static final int BQ_MASK = (1 << W) - 1;
+
+    // Mask to extract the fraction bits.
+    private static final long T_MASK = (1L << P - 1) - 1;
+
+    /*
+    H is the minimal number of decimal digits needed to ensure that
+        for all finite v, round-to-half-even(toString(v)) = v
+     */
+    private static final int H = 17;
+
+    // Used in rop().
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // Used for digit extraction in toChars() and its dependencies.
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    // The maximal number of characters in the rendering of a double.
+    private static final int MAX_CHARS = H + 7;
+
+    // Returned by toDecimal(double) to classify its argument.
+    private static final int NON_SPECIAL = 0;
+    private static final int PLUS_ZERO = 1;
+    private static final int MINUS_ZERO = 2;
+    private static final int PLUS_INF = 3;
+    private static final int MINUS_INF = 4;
+    private static final int NAN = 5;
+
+    // For thread-safety, each thread gets its own instance of this class.
+    private static final ThreadLocal<ThreadLocalDoubleToDecimal> threadLocal =
+            ThreadLocal.withInitial(ThreadLocalDoubleToDecimal::new);
+
+    /*
+    Room for the longer of the forms
+        -ddddd.dddddddddddd         H + 2 characters
+        -0.00ddddddddddddddddd      H + 5 characters
+        -d.ddddddddddddddddE-eee    H + 7 characters
+    where there are H digits d
+     */
+    private final byte[] buf = new byte[MAX_CHARS];
+
+    // Index into buf of rightmost valid character.
+    private int index;
+
+    private ThreadLocalDoubleToDecimal() {
+    }
+
+    /**
+     * Returns the same string as {@link DoubleToDecimal#toString(double)}.
+     *
+     * @param v the {@code double} to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public static String toString(double v) {
+        return threadLocalInstance().toDecimalString(v);
+    }
+
+    private static ThreadLocalDoubleToDecimal threadLocalInstance() {
+        return threadLocal.get();
+    }
+
+    private String toDecimalString(double v) {
+        index = -1;
+        int type = toDecimal(v, null);
+        return type == NON_SPECIAL ? charsToString() : special(type);
+    }
+
+    private static String special(int type) {
+        switch (type) {
+            case PLUS_ZERO: return "0.0";
+            case MINUS_ZERO: return "-0.0";
+            case PLUS_INF: return "Infinity";
+            case MINUS_INF: return "-Infinity";
+            default: return "NaN";
+        }
+    }
+
+    /*
+    Returns NON_SPECIAL and leaves the rendering in buf when v is finite
+    and non-zero, or sets dec to the selected decimal when dec != null.
+    Otherwise, returns the type of v and leaves buf and dec unspecified.
+     */
+    private int toDecimal(double v, Decimal dec) {
+        /*
+        For details not discussed here see reference [2].
+
+        Let
+            Q_MAX = 2^(W-1) - P
+            C_MAX = 2^P - 1
+        For finite v != 0, determine integers c and q such that
+            |v| = c 2^q    and
+            Q_MIN <= q <= Q_MAX    and
+                either    C_MIN <= c <= C_MAX              (normal value)
+                or        0 < c < C_MIN  and  q = Q_MIN    (subnormal value)
+         */
+        long bits = doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bq < BQ_MASK) {
+            if (bits < 0) {
+                append('-');
+            }
+            if (bq != 0) {
+                // normal value
+                return toDecimal(Q_MIN - 1 + bq, C_MIN | t, dec);
+            }
+            if (t != 0) {
+                // subnormal value
+                return toDecimal(Q_MIN, t, dec);
+            }
+            return bits == 0 ? PLUS_ZERO : MINUS_ZERO;
+        }
+        if (t != 0) {
+            return NAN;
+        }
+        return bits > 0 ? PLUS_INF : MINUS_INF;
+    }
+
+    private int toDecimal(int q, long c, Decimal dec) {
+        // For full details see reference [1].
+        int out = (int) c & 0x1;
+        long cb;
+        long cbr;
+        long cbl;
+        int k;
+        int h;
+        if (c != C_MIN | q == Q_MIN) {
+            // regular spacing
+            cb = c << 1;
+            cbr = cb + 1;
+            k = flog10pow2(q);
+            h = q + flog2pow10(-k) + 3;
+        } else {
+            // irregular spacing
+            cb = c << 2;
+            cbr = cb + 2;
+            k = flog10threeQuartersPow2(q);
+            h = q + flog2pow10(-k) + 2;
+        }
+        cbl = cb - 1;
+
+        long g1 = floorPow10p1dHigh(-k);
+        long g0 = floorPow10p1dLow(-k);
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            /*
+            sp10 = 10 s',    tp10 = 10 t' = sp10 + 10
+            This is the only place where a division (the %) is carried out.
+             */
+            long sp10 = s - s % 10;
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, dec);
+            }
+        } else if (s < 10) {
+            switch ((int) s) {
+                case 4:
+                    return toChars(49, -325, dec); // 4.9 10^(-324)
+                case 9:
+                    return toChars(99, -325, dec); // 9.9 10^(-324)
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            // Exactly one of s 10^k or t 10^k lies in Rv.
+            return toChars(uin ? s : t, k, dec);
+        }
+        // Both s 10^k and t 10^k lie in Rv: determine the one closest to v.
+        long cmp = vb - (s + t << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k, dec);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        // For full details see reference [1].
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /*
+    Formats the decimal f 10^e, or sets dec to it when dec != null.
+     */
+    private int toChars(long f, int e, Decimal dec) {
+        if (dec != null) {
+            dec.set(f, e);
+            return NON_SPECIAL;
+        }
+        /*
+        For details not discussed here see reference [3].
+
+        Determine len such that
+            10^(len-1) <= f < 10^len
+         */
+        int len = flog10pow2(Long.SIZE - numberOfLeadingZeros(f));
+        if (f >= pow10[len]) {
+            len += 1;
+        }
+
+        /*
+        Let fp and ep be the original f and e, respectively.
+        Transform f and e to ensure
+            10^(H-1) <= f < 10^H
+            fp 10^ep = f 10^(e-H) = 0.f 10^e
+         */
+        f *= pow10[H - len];
+        e += len;
+
+        /*
+        The toChars?() methods perform left-to-right digits extraction
+        using ints, provided that the arguments are limited to 8 digits.
+        Therefore, split the H = 17 digits of f into:
+            h = the most significant digit of f
+            m = the next 8 most significant digits of f
+            l = the last 8, least significant digits of f
+
+        To avoid divisions, it can be shown ([3]) that
+            floor(f / 10^8) =
+                floor(193'428'131'138'340'668 f / 2^84) =
+                floor(48'357'032'784'585'167 f / 2^82) =
+                floor(floor(48'357'032'784'585'167 f / 2^64) / 2^18)
+        and similarly
+            floor(hm / 10^8) = floor(1'441'151'881 hm / 2^57)
+         */
+        long hm = multiplyHigh(f, 48_357_032_784_585_167L) >>> 18;
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);
+        int m = (int) (hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {
+            return toChars1(h, m, l, e);
+        }
+        if (-3 < e && e <= 0) {
+            return toChars2(h, m, l, e);
+        }
+        return toChars3(h, m, l, e);
+    }
+
+    private int toChars1(int h, int m, int l, int e) {
+        /*
+        0 < e <= 7: plain format without leading zeroes.
+        The left-to-right digits generation is inspired by [4].
+         */
+        appendDigit(h);
+        int y = y(m);
+        int t;
+        int i = 1;
+        for (; i < e; ++i) {
+            t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+        append('.');
+        for (; i <= 8; ++i) {
+            t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+        lowDigits(l);
+        return NON_SPECIAL;
+    }
+
+    private int toChars2(int h, int m, int l, int e) {
+        // -3 < e <= 0: plain format with leading zeroes.
+        appendDigit(0);
+        append('.');
+        for (; e < 0; ++e) {
+            appendDigit(0);
+        }
+        appendDigit(h);
+        append8Digits(m);
+        lowDigits(l);
+        return NON_SPECIAL;
+    }
+
+    private int toChars3(int h, int m, int l, int e) {
+        // -3 >= e | e > 7: computerized scientific notation
+        appendDigit(h);
+        append('.');
+        append8Digits(m);
+        lowDigits(l);
+        exponent(e - 1);
+        return NON_SPECIAL;
+    }
+
+    private void lowDigits(int l) {
+        if (l != 0) {
+            append8Digits(l);
+        }
+        removeTrailingZeroes();
+    }
+
+    private void append8Digits(int m) {
+        // The left-to-right digits generation is inspired by [4]
+        int y = y(m);
+        for (int i = 0; i < 8; ++i) {
+            int t = 10 * y;
+            appendDigit(t >>> 28);
+            y = t & MASK_28;
+        }
+    }
+
+    private void removeTrailingZeroes() {
+        while (buf[index] == '0') {
+            --index;
+        }
+        if (buf[index] == '.') {
+            ++index;
+        }
+    }
+
+    /*
+    Computes floor((m + 1) 2^28 / 10^8) - 1, needed by [4], as in [3]
+     */
+    private int y(int m) {
+        return (int) (multiplyHigh(
+                (long) (m + 1) << 28,
+                48_357_032_784_585_167L) >>> 18) - 1;
+    }
+
+    private void exponent(int e) {
+        append('E');
+        if (e < 0) {
+            append('-');
+            e = -e;
+        }
+        if (e < 10) {
+            appendDigit(e);
+            return;
+        }
+        /*
+        It can be shown ([3]) that
+            floor(e / 10) = floor(205 e / 2^11)
+            floor(e / 100) = floor(1'311 e / 2^17)
+         */
+        if (e < 100) {
+            int d = e * 205 >>> 11;
+            appendDigit(d);
+            appendDigit(e - 10 * d);
+            return;
+        }
+        int d = e * 1_311 >>> 17;
+        appendDigit(d);
+        e -= 100 * d;
+        d = e * 205 >>> 11;
+        appendDigit(d);
+        appendDigit(e - 10 * d);
+    }
+
+    private void append(int c) {
+        buf[++index] = (byte) c;
+    }
+
+    private void appendDigit(int d) {
+        buf[++index] = (byte) ('0' + d);
+    }
+
+    private String charsToString() {
+        return new String(buf, 0, index + 1, ISO_8859_1);
+    }
+
+}
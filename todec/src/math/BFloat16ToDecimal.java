@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import static java.lang.Float.intBitsToFloat;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+import static math.MathUtils.*;
+
+/**
+ * This class exposes methods to render a bfloat16 value, given by its bits
+ * in a {@code short}, as a string or as a sequence of ASCII bytes.
+ *
+ * <p>A bfloat16 has the sign and exponent fields of a {@code float} and
+ * the 7 most significant bits of its fraction field: it is exactly the
+ * {@code float} whose bits are those of the bfloat16 followed by 16 zeroes.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class BFloat16ToDecimal {
+    /*
+    The exponent range is the one of float, so the selection and the
+    formatting are those of FloatToDecimal, with the precision of bfloat16.
+    Only the smallest subnormal needs a special case of its own.
+     */
+
+    // The precision in bits.
+    private static final int P = 8;
+
+    // Exponent width in bits.
+    private static final int W = (Short.SIZE - 1) - (P - 1);
+
+    // Minimum value of the exponent: -(2^(W-1)) - P + 3.
+    private static final int Q_MIN = (-1 << W - 1) - P + 3;
+
+    // Minimum value of the significand of a normal value: 2^(P-1).
+    private static final int C_MIN = 1 << P - 1;
+
+    // Mask to extract the biased exponent.
+    private static final int BQ_MASK = (1 << W) - 1;
+
+    // Mask to extract the fraction bits.
+    private static final int T_MASK = (1 << P - 1) - 1;
+
+    /*
+    H is the minimal number of decimal digits needed to ensure that
+        for all finite v, round-to-half-even(toString(v)) = v
+     */
+    private static final int H = 4;
+
+    /**
+     * The maximal number of characters in the rendering of a bfloat16.
+     */
+    public static final int MAX_CHARS = H + 6;
+
+    /*
+    The formatting of FloatToDecimal writes ahead of the rendering, within
+    the room of the longest float rendering, so the arrays it writes to
+    have this larger room. It exceeds MAX_CHARS, so toBytes() renders
+    destinations with less room by way of the scratch array of the thread.
+     */
+    private static final int ROOM = FloatToDecimal.MAX_CHARS;
+
+    private BFloat16ToDecimal() {
+    }
+
+    /**
+     * Returns a string rendering of the bfloat16 value whose bits are
+     * the argument.
+     *
+     * <p>The rendering is specified as in
+     * {@link FloatToDecimal#toString(float)}, except that the decimal
+     * <i>d</i><sub><code>v</code></sub> is selected among the decimals
+     * that round to {@code v} according to the
+     * round-to-closest rule of bfloat16 arithmetic.
+     * Thus, it is shortest for bfloat16, rather than for the {@code float}
+     * {@code v} widens to, and at most 4 digits long.
+     * For example, the bfloat16 closest to 0.1 is rendered as {@code 0.1},
+     * whereas its widening is rendered as {@code 0.100097656}.
+     *
+     * @param v the bits of the bfloat16 to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public static String toString(short v) {
+        byte[] buf = new byte[ROOM];
+        int index = toDecimalChars(buf, -1, v);
+        return new String(buf, 0, index + 1, ISO_8859_1);
+    }
+
+    /**
+     * Writes the rendering of the bfloat16 argument into the array
+     * {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of {@link #toString(short)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * <p>The rendering is written directly into {@code dst} only when
+     * at least {@link FloatToDecimal#MAX_CHARS} bytes are available,
+     * as the formatting shared with {@code float}s writes ahead within
+     * that room. Otherwise, it is rendered into an array private to the
+     * current thread and then copied, which costs a little more time but
+     * allocates nothing.
+     *
+     * @param v the bits of the bfloat16 to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toBytes(short v, byte[] dst, int off) {
+        // As in FloatToDecimal, with 2 overlapping longs saved
+        if (off >= 0 && dst.length - off >= ROOM) {
+            int last = off + ROOM - 8;
+            long s0 = getLong(dst, off);
+            long s1 = getLong(dst, last);
+            int len = toDecimalChars(dst, off - 1, v) - off + 1;
+            restore(dst, off, len, s0);
+            restore(dst, last, len - (ROOM - 8), s1);
+            return len;
+        }
+        byte[] buf = scratch();
+        int len = toDecimalChars(buf, -1, v) + 1;
+        checkFromIndexSize(off, len, dst.length);
+        System.arraycopy(buf, 0, dst, off, len);
+        return len;
+    }
+
+    /**
+     * Renders {@code len} bfloat16 elements of {@code a}, starting at index
+     * {@code off}, and appends the renderings to {@code dst},
+     * separated by {@code sep}.
+     *
+     * <p>This is the analogue of
+     * {@link FloatToDecimal#toBytes(float[], int, int, String, ByteBuilder)},
+     * with each element rendered as by {@link #toBytes(short, byte[], int)}.
+     *
+     * @param a the array of bfloat16 bits to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(short[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        checkFromIndexSize(off, len, a.length);
+        BulkToDecimalEvent event = Events.bulk(null, dst);
+        toDecimalBytes(a, off, len, sep.getBytes(ISO_8859_1), dst);
+        if (event != null) {
+            event.finish("bfloat16", "java", len, dst);
+        }
+        return dst;
+    }
+
+    /**
+     * Appends the rendering of the bfloat16 argument to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(short)}, but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the bits of the bfloat16 to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, short v) {
+        byte[] buf = new byte[ROOM];
+        int index = toDecimalChars(buf, -1, v);
+        sb.ensureCapacity(sb.length() + index + 1);
+        for (int i = 0; i <= index; ++i) {
+            sb.append((char) buf[i]);
+        }
+        return sb;
+    }
+
+    private static ByteBuilder toDecimalBytes(short[] a, int off, int len,
+            byte[] sep, ByteBuilder dst) {
+        // As in FloatToDecimal
+        int room = sep.length + ROOM;
+        byte[] buf = dst.bytes;
+        int index = dst.count - 1;
+        for (int i = off, end = off + len; i < end; ++i) {
+            if (index + room >= buf.length) {
+                dst.count = index + 1;
+                dst.ensureCapacity(dst.count + room);
+                buf = dst.bytes;
+            }
+            if (i != off) {
+                for (byte b : sep) {
+                    buf[++index] = b;
+                }
+            }
+            index = toDecimalChars(buf, index, a[i]);
+        }
+        dst.count = index + 1;
+        return dst;
+    }
+
+    /*
+    Renders v into buf after index, including the special values,
+    and returns the index of the last character.
+     */
+    private static int toDecimalChars(byte[] buf, int index, short v) {
+        // The sign extension of bits is masked away, except in the sign.
+        int bits = v;
+        int t = bits & T_MASK;
+        int bq = (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK || bq == 0 && t == 0) {
+            // The zeroes, infinities and NaNs are those of the widening
+            return FloatToDecimal.toDecimalChars(buf, index,
+                    intBitsToFloat(bits << 16));
+        }
+        if (bits < 0) {
+            buf[++index] = '-';
+        }
+        if (bq != 0) {
+            // normal value
+            return FloatToDecimal.toDecimal(buf, index, P, Q_MIN,
+                    Q_MIN - 1 + bq, C_MIN | t);
+        }
+        if (t != 1) {
+            // subnormal value
+            return FloatToDecimal.toDecimal(buf, index, P, Q_MIN, Q_MIN, t);
+        }
+        /*
+        The smallest subnormal, 2^-133, is the only value whose s is less
+        than 10 in the selection, namely s = 9. Its rendering has the 2
+        digits of the closest decimal, 9.2 10^-41.
+         */
+        return FloatToDecimal.toChars(buf, index, 0, 92, -42);
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import math.PathCounters.Path;
+
+/**
+ * A JDK Flight Recorder event for the rendering of an array slice by
+ * one of the bulk methods, like
+ * {@link DoubleToDecimal#toBytes(double[], int, int, String, ByteBuilder)}.
+ * Its duration is the elapsed time of the whole slice.
+ * The methods of {@link ParallelToDecimal} emit one event per chunk.
+ *
+ * <p>The path mix counts the paths taken by the rendering of the slice
+ * only, as tallied on its thread alongside the {@link PathCounters}, so
+ * the renderings of other threads in the meantime are not included.
+ * It is 0 when counting is disabled, and always 0 for binary16 and
+ * bfloat16.
+ *
+ * <p>Until JFR is initialized, the bulk methods only check that it is
+ * not, and when the event is disabled, they only check that it is, once
+ * per call. When the module {@code jdk.jfr} is absent, they check nothing.
+ *
+ * @author Raffaello Giulietti
+ */
+@Name("math.BulkToDecimal")
+@Label("Bulk Decimal Rendering")
+@Category({"Java Application", "Decimal Rendering"})
+@Description("Rendering of an array slice of floating-point values")
+@StackTrace(false)
+final public class BulkToDecimalEvent extends Event {
+
+    @Label("Type")
+    @Description("double, float, binary16 or bfloat16")
+    public String type;
+
+    @Label("Format")
+    @Description("java or json")
+    public String format;
+
+    @Label("Values")
+    public int count;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Regular Spacing")
+    public long regularSpacing;
+
+    @Label("Irregular Spacing")
+    public long irregularSpacing;
+
+    @Label("Short Decimal")
+    public long shortDecimal;
+
+    @Label("Shorter Decimal")
+    public long shorterDecimal;
+
+    @Label("Subnormal Case")
+    public long subnormalCase;
+
+    @Label("Both in Rv")
+    public long bothInRv;
+
+    @Label("Plain Chars")
+    public long plainChars;
+
+    @Label("Leading Zeroes Chars")
+    public long leadingZeroesChars;
+
+    @Label("Exponent Chars")
+    public long exponentChars;
+
+    // Not recorded: the state between start() and finish().
+    private transient long[] tally;
+    private transient int start;
+
+    // Instances are created by the renderers only.
+    BulkToDecimalEvent() {
+    }
+
+    /*
+    Returns a begun event, or null when the event is disabled.
+    Nothing is allocated before JFR is initialized, as no event can be
+    enabled then.
+     */
+    static BulkToDecimalEvent start(PathCounters counters, ByteBuilder dst) {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        BulkToDecimalEvent event = new BulkToDecimalEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        if (counters != null && PathCounters.ENABLED) {
+            event.tally = PathCounters.startTally();
+        }
+        event.start = dst.length();
+        event.begin();
+        return event;
+    }
+
+    /*
+    Ends the event begun by start() and commits it, unless it falls below
+    the threshold of the recording.
+     */
+    void finish(String type, String format, int count, ByteBuilder dst) {
+        end();
+        if (tally != null) {
+            PathCounters.stopTally();
+        }
+        if (!shouldCommit()) {
+            return;
+        }
+        this.type = type;
+        this.format = format;
+        this.count = count;
+        bytes = dst.length() - start;
+        if (tally != null) {
+            regularSpacing = count(Path.REGULAR_SPACING);
+            irregularSpacing = count(Path.IRREGULAR_SPACING);
+            shortDecimal = count(Path.SHORT_DECIMAL);
+            shorterDecimal = count(Path.SHORTER_DECIMAL);
+            subnormalCase = count(Path.SUBNORMAL_CASE);
+            bothInRv = count(Path.BOTH_IN_RV);
+            plainChars = count(Path.PLAIN_CHARS);
+            leadingZeroesChars = count(Path.LEADING_ZEROES_CHARS);
+            exponentChars = count(Path.EXPONENT_CHARS);
+        }
+        commit();
+    }
+
+    private long count(Path p) {
+        return tally[p.ordinal()];
+    }
+
+}
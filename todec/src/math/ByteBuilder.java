@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * A growable sequence of bytes, the byte oriented analogue of
+ * {@link StringBuilder}.
+ *
+ * <p>The bulk methods of {@link DoubleToDecimal} and {@link FloatToDecimal}
+ * render whole arrays into instances of this class.
+ * Instances are not safe for use by multiple threads.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class ByteBuilder {
+
+    // The largest capacity that is safe to request from the JVM.
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /*
+    The bytes in [0, count) are valid.
+    Package private, as the renderers write directly into them.
+     */
+    byte[] bytes;
+    int count;
+
+    /**
+     * Creates an empty instance with a default initial capacity.
+     */
+    public ByteBuilder() {
+        this(64);
+    }
+
+    /**
+     * Creates an empty instance with the given initial capacity.
+     *
+     * @param capacity the initial capacity.
+     * @throws IllegalArgumentException if {@code capacity} is negative.
+     */
+    public ByteBuilder(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity");
+        }
+        bytes = new byte[capacity];
+    }
+
+    /**
+     * Returns the number of bytes in this instance.
+     *
+     * @return the number of bytes.
+     */
+    public int length() {
+        return count;
+    }
+
+    /**
+     * Returns the byte at the given index.
+     *
+     * @param index the index of the byte.
+     * @return the byte at {@code index}.
+     * @throws IndexOutOfBoundsException if {@code index} is negative or
+     * not less than {@link #length()}.
+     */
+    public byte byteAt(int index) {
+        checkFromIndexSize(index, 1, count);
+        return bytes[index];
+    }
+
+    /**
+     * Empties this instance, retaining its capacity.
+     *
+     * @return this instance.
+     */
+    public ByteBuilder clear() {
+        count = 0;
+        return this;
+    }
+
+    /**
+     * Ensures that the capacity is at least {@code minCapacity}.
+     *
+     * @param minCapacity the minimal desired capacity.
+     * @throws OutOfMemoryError if {@code minCapacity} is too large.
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > bytes.length) {
+            grow(minCapacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("required capacity too large");
+        }
+        int capacity = (int) Math.min(2L * bytes.length + 2, MAX_CAPACITY);
+        bytes = Arrays.copyOf(bytes, Math.max(capacity, minCapacity));
+    }
+
+    /**
+     * Appends a byte.
+     *
+     * @param b the byte to append.
+     * @return this instance.
+     */
+    public ByteBuilder append(byte b) {
+        ensureCapacity(count + 1);
+        bytes[count++] = b;
+        return this;
+    }
+
+    /**
+     * Appends {@code len} bytes of {@code src}, starting at index
+     * {@code off}.
+     *
+     * @param src the bytes to append.
+     * @param off the index of the first byte to append.
+     * @param len the number of bytes to append.
+     * @return this instance.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code src}.
+     */
+    public ByteBuilder append(byte[] src, int off, int len) {
+        checkFromIndexSize(off, len, src.length);
+        ensureCapacity(count + len);
+        System.arraycopy(src, off, bytes, count, len);
+        count += len;
+        return this;
+    }
+
+    /**
+     * Appends the bytes of another instance.
+     *
+     * @param bb the instance whose bytes are appended.
+     * @return this instance.
+     */
+    public ByteBuilder append(ByteBuilder bb) {
+        return append(bb.bytes, 0, bb.count);
+    }
+
+    /**
+     * Returns a copy of the bytes in this instance.
+     *
+     * @return a new array with the bytes of this instance.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, count);
+    }
+
+    /**
+     * Returns a read-only {@link ByteBuffer} that shares the bytes of this
+     * instance, positioned at 0 and limited to {@link #length()}.
+     * The view is valid only until this instance is next modified.
+     *
+     * @return a read-only view of the bytes of this instance.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, count).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the bytes of this instance to {@code out}.
+     *
+     * @param out the stream to write to.
+     * @throws IOException if {@code out} throws it.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, count);
+    }
+
+    /**
+     * Returns the string whose characters are the bytes of this instance,
+     * decoded as ISO-8859-1.
+     * The renderers only produce ASCII bytes, which decode as themselves.
+     *
+     * @return the bytes of this instance as a string.
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, count, ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+/**
+ * A mutable holder for a signed decimal
+ * &plusmn;<i>d</i>&times;10<sup><i>i</i></sup>,
+ * as selected by {@link DoubleToDecimal#split(double, Decimal)} and
+ * {@link FloatToDecimal#split(float, Decimal)}.
+ *
+ * <p>For a non-zero decimal, the significand <i>d</i> &gt; 0 is not
+ * a multiple of 10, as in the specification of
+ * {@link DoubleToDecimal#toString(double)}.
+ * For a zero, both <i>d</i> and <i>i</i> are 0.
+ *
+ * <p>Instances are meant to be reused across invocations,
+ * so that splitting is free of allocations.
+ * They are not safe for use by multiple threads.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class Decimal {
+
+    private boolean negative;
+    private long significand;
+    private int exponent;
+
+    /**
+     * Creates an instance holding 0.
+     */
+    public Decimal() {
+    }
+
+    /**
+     * Returns whether the decimal is negative, including -0.
+     *
+     * @return whether the decimal is negative.
+     */
+    public boolean isNegative() {
+        return negative;
+    }
+
+    /**
+     * Returns the significand <i>d</i> &ge; 0 of the decimal.
+     *
+     * @return the significand.
+     */
+    public long significand() {
+        return significand;
+    }
+
+    /**
+     * Returns the exponent <i>i</i> of the decimal.
+     *
+     * @return the exponent.
+     */
+    public int exponent() {
+        return exponent;
+    }
+
+    /**
+     * Returns a string rendering of this decimal, as the significand
+     * and exponent in plain decimal, separated by {@code E}.
+     * For example, -123&times;10<sup>-4</sup> is rendered as
+     * {@code -123E-4}.
+     *
+     * @return a string rendering of this decimal.
+     */
+    @Override
+    public String toString() {
+        return (negative ? "-" : "") + significand + "E" + exponent;
+    }
+
+    void setNegative(boolean negative) {
+        this.negative = negative;
+    }
+
+    /*
+    Sets the decimal to f 10^e, removing the trailing zeroes of f > 0.
+     */
+    void set(long f, int e) {
+        long q = f / 10;
+        while (f == 10 * q) {
+            f = q;
+            e += 1;
+            q = f / 10;
+        }
+        significand = f;
+        exponent = e;
+    }
+
+    void setZero() {
+        significand = 0;
+        exponent = 0;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Long.numberOfTrailingZeros;
+import static math.MathUtils.*;
+
+/**
+ * This class rounds binary values c&nbsp;2<sup>q</sup> to integer
+ * multiples of powers of 10, as needed by the fixed precision renderings
+ * of {@link DoubleToDecimal} and {@link FloatToDecimal}.
+ *
+ * @author Raffaello Giulietti
+ */
+final class DecimalRounding {
+
+    // Returned by round() when floor(c 2^q 10^(-k)) < min.
+    static final long LOW = -1;
+
+    // Returned by round() when it cannot decide the result.
+    static final long UNDECIDED = -2;
+
+    // 10^(-k) = beta 2^r with an integer beta for -MAX_EXACT_EXP <= k <= 0.
+    private static final int MAX_EXACT_EXP = 54;
+
+    // The approximated fractions are at most ERR units of 2^-64 too large.
+    private static final long ERR = 5;
+
+    private DecimalRounding() {
+    }
+
+    /*
+    Checks that mode is one of the supported rounding modes and returns
+    whether it is HALF_EVEN, rather than HALF_UP.
+     */
+    static boolean isHalfEven(RoundingMode mode) {
+        switch (mode) {
+            case HALF_EVEN: return true;
+            case HALF_UP: return false;
+            default: throw new IllegalArgumentException(
+                    "unsupported rounding mode " + mode);
+        }
+    }
+
+    /*
+    Returns round(c 2^q 10^(-k)), for 0 < c < 2^63, with ties resolved as
+    specified by halfEven, provided that the result is less than 2^62.
+    Returns LOW if floor(c 2^q 10^(-k)) < min, and UNDECIDED when the
+    approximation of 10^(-k) in the table is not accurate enough to decide,
+    which happens about once in 2^60 random cases.
+
+    Let e = -k and, as in MathUtils.floorPow10p1dHigh(int),
+        10^e = beta 2^r    and    g = floor(beta) + 1
+    and let
+        cn = c 2^s,    2^63 <= cn < 2^64
+    Then
+        c 2^q 10^e = cn beta 2^(q+r-s)    and    cn g - cn <= cn beta < cn g
+    As in DecimalToDouble, the product cn g is computed exactly, in 63 bit
+    limbs, by MathUtils.productTop() and its companions, as
+        cn g = top 2^126 + mid 2^63 + low,    2^62 <= top < 2^64
+    so that, with t = q + r - s + 126,
+        c 2^q 10^e < (top + (mid 2^63 + low) 2^-126) 2^t
+    The shift x = -t applied to top is never negative. Indeed, as
+    cn g >= top 2^126 >= 2^188 and cn < 2^64
+        c 2^q 10^e >= (cn g - cn) 2^(t-126) > (2^188 - 2^64) 2^(t-126)
+    which is at least 2^62 for t >= 1. The callers keep the result below
+    2^62, as it is less than 10^18 (at most H + 1 digits in toPrecision(),
+    at most MAX_FRACTION_DIGITS digits or c < 2^53 in FixedDecimal).
+    So t <= 0, the integer part is the top bits of top, and the 64 bits
+    that follow are the fraction f, in units of 2^-64.
+    Since cn < 2^64, the true fraction lies in (f - ERR, f], unless the
+    true value is slightly less than the integer part. Either way,
+    only f in [1/2, 1/2 + ERR] does not decide the rounding: there, an
+    exact tie is detected by integer arithmetic, while the other cases
+    are UNDECIDED.
+
+    For 0 <= e <= MAX_EXACT_EXP, however, beta is an integer, so g - 1 is
+    used instead of g: the product is then exact, and rounding is always
+    decided, including the ties.
+     */
+    static long round(long c, int q, int k, long min, boolean halfEven) {
+        int e = -k;
+        int s = numberOfLeadingZeros(c);
+        long cn = c << s;
+        long g1 = floorPow10p1dHigh(e);
+        boolean exact = 0 <= e && e <= MAX_EXACT_EXP;
+        long g0 = floorPow10p1dLow(e) - (exact ? 1 : 0);
+
+        // cn g = top 2^126 + mid 2^63 + q0
+        long top = productTop(cn, g1, g0);
+        long mid = productMid(cn, g1, g0);
+        long q0 = productLow(cn, g0);
+
+        /*
+        The integer part i, the fraction f and whether the bits after f
+        are not all zeroes. The 64 bits that follow top are mid and the
+        most significant bit of q0. The shift x = -t is not negative,
+        as shown above.
+         */
+        int x = -(q + flog2pow10(e) - 125 - s + 126);
+        long next = mid << 1 | q0 >>> 62;
+        long i;
+        long f;
+        boolean sticky = (q0 & (1L << 62) - 1) != 0;
+        if (x == 0) {
+            i = top;
+            f = next;
+        } else if (x < Long.SIZE) {
+            i = top >>> x;
+            f = top << Long.SIZE - x | next >>> x;
+            sticky |= next << Long.SIZE - x != 0;
+        } else if (x < 2 * Long.SIZE) {
+            i = 0;
+            f = top >>> x - Long.SIZE;
+            sticky |= next != 0 || x > Long.SIZE
+                    && top << 2 * Long.SIZE - x != 0;
+        } else {
+            i = 0;
+            f = 0;
+            sticky = true;
+        }
+        if (i < min) {
+            return LOW;
+        }
+
+        long half = 1L << 63;
+        if (exact) {
+            if (f == half && !sticky) {
+                return halfEven ? i + (i & 0x1) : i + 1;
+            }
+            return Long.compareUnsigned(f, half) < 0 ? i : i + 1;
+        }
+        if (Long.compareUnsigned(f, half) < 0) {
+            return i;
+        }
+        if (Long.compareUnsigned(f - half, ERR) > 0) {
+            return i + 1;
+        }
+        if (isTie(c, q, k, i)) {
+            return halfEven ? i + (i & 0x1) : i + 1;
+        }
+        return UNDECIDED;
+    }
+
+    /*
+    Returns whether c 2^q 10^(-k) = i + 1/2 exactly, for k < 0 or
+    k > MAX_EXACT_EXP, that is, whether
+        c 2^(q+1) = (2 i + 1) 5^k 2^k
+    For k < 0 this is never the case: c 5^(-k) 2^(q+1-k) would have to be
+    the odd 2 i + 1 < 2^63, but 5^(-k) > 5^MAX_EXACT_EXP > 2^63.
+    For k > 0, the odd parts and the powers of 2 must be equal.
+     */
+    private static boolean isTie(long c, int q, int k, long i) {
+        if (k < 0 || k > 27) {
+            // 5^27 < 2^63 < 5^28
+            return false;
+        }
+        int tz = numberOfTrailingZeros(c);
+        long p5 = 1;
+        for (int j = 0; j < k; ++j) {
+            p5 *= 5;
+        }
+        long odd = c >>> tz;
+        return q + 1 + tz == k && odd % p5 == 0 && odd / p5 == 2 * i + 1;
+    }
+
+    /*
+    The exact fallback for the UNDECIDED cases of round().
+     */
+    static long roundExactly(double v, int k, boolean halfEven) {
+        return new BigDecimal(v).abs().scaleByPowerOfTen(-k)
+                .setScale(0, halfEven ? RoundingMode.HALF_EVEN
+                        : RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+}
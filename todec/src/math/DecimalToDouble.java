@@ -0,0 +1,742 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
+
+import static java.lang.Double.doubleToRawLongBits;
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.floatToRawIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+import static math.MathUtils.*;
+
+/**
+ * This class exposes methods to parse a decimal string as a
+ * {@code double} or as a {@code float}, correctly rounded.
+ *
+ * <p>The accepted strings are those matching
+ * <blockquote><pre>
+ * [+-]? ( NaN | Infinity | <i>Significand</i> <i>Exponent</i>? )
+ * </pre></blockquote>
+ * where
+ * <blockquote><pre>
+ * <i>Significand</i>: <i>Digits</i> ( . <i>Digits</i>? )? | . <i>Digits</i>
+ * <i>Exponent</i>: [eE] [+-]? <i>Digits</i>
+ * </pre></blockquote>
+ * and <i>Digits</i> is a non-empty sequence of ASCII decimal digits.
+ * In particular, all the renderings of {@link DoubleToDecimal} and
+ * {@link FloatToDecimal} are accepted and parse back to the rendered value.
+ * Besides strings, ASCII bytes in arrays and in {@link ByteBuffer}s can be
+ * parsed in place, consuming the longest accepted prefix.
+ * Unlike {@link Double#parseDouble(String)}, leading and trailing
+ * whitespace, hexadecimal notation and type suffixes are not accepted.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class DecimalToDouble {
+    /*
+    For full details about this code see the following references:
+
+    [1] Giulietti, "The Schubfach way to render doubles",
+        https://drive.google.com/open?id=1KLtG_LaIbK9ETXI290zqCxvBW94dj058
+
+    [2] Clinger, "How to read floating point numbers accurately"
+
+    [3] Lemire, "Number parsing at a gigabyte per second"
+     */
+
+    // The precisions in bits.
+    private static final int D_P = 53;
+    private static final int F_P = 24;
+
+    // The exponent widths in bits.
+    private static final int D_W = (Double.SIZE - 1) - (D_P - 1);
+    private static final int F_W = (Float.SIZE - 1) - (F_P - 1);
+
+    /*
+    A decimal c 10^e, with c of n digits, lies in [10^(n+e-1), 10^(n+e)).
+    It is certainly infinite when n + e >= *_INF_EXP
+    and certainly rounds to zero when n + e <= *_ZERO_EXP.
+     */
+    private static final int D_INF_EXP = 310;
+    private static final int D_ZERO_EXP = -324;
+    private static final int F_INF_EXP = 40;
+    private static final int F_ZERO_EXP = -46;
+
+    // The maximal number of significant digits that are accumulated.
+    private static final int MAX_DIGITS = 19;
+
+    // Returned by the conversions when they cannot decide the result.
+    private static final long UNDECIDED = -1;
+
+    // Used in toBits().
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // 10^e = beta 2^r with an integer beta for 0 <= e <= MAX_EXACT_EXP.
+    private static final int MAX_EXACT_EXP = 54;
+
+    // The powers of 10 that are exact doubles, see [2].
+    private static final double[] exactPow10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    // The bytes of the symbolic renderings.
+    private static final byte[] NAN = "NaN".getBytes(ISO_8859_1);
+    private static final byte[] INFINITY = "Infinity".getBytes(ISO_8859_1);
+
+    /*
+    The number of bytes first copied from a buffer without an accessible
+    array, which covers any rendering of DoubleToDecimal.toString().
+     */
+    private static final int WINDOW = 64;
+
+    private DecimalToDouble() {
+    }
+
+    /**
+     * Returns the {@code double} closest to the decimal denoted by
+     * the argument, or {@code NaN} or an infinity.
+     * Ties are resolved to the {@code double} with an even significand,
+     * as in {@link Double#parseDouble(String)}.
+     *
+     * @param s the string to be parsed.
+     * @return the {@code double} denoted by {@code s}.
+     * @throws NumberFormatException if {@code s} is not accepted,
+     * as described in the class comment.
+     */
+    public static double parseDouble(String s) {
+        return parse(s, false);
+    }
+
+    /**
+     * Returns the {@code float} closest to the decimal denoted by
+     * the argument, or {@code NaN} or an infinity.
+     * Ties are resolved to the {@code float} with an even significand,
+     * as in {@link Float#parseFloat(String)}.
+     *
+     * <p>The result is rounded only once, not first to a {@code double}.
+     *
+     * @param s the string to be parsed.
+     * @return the {@code float} denoted by {@code s}.
+     * @throws NumberFormatException if {@code s} is not accepted,
+     * as described in the class comment.
+     */
+    public static float parseFloat(String s) {
+        return (float) parse(s, true);
+    }
+
+    /**
+     * Parses the longest prefix of the ASCII bytes in
+     * {@code src[off, off + len)} that is accepted, as described in the
+     * class comment, and returns the {@code double} it denotes,
+     * as in {@link #parseDouble(String)}.
+     * No {@link String} is created, except in rare cases.
+     *
+     * <p>On return, the index of {@code pos} is set to the index in
+     * {@code src} that follows the last consumed byte.
+     * The bytes after the prefix, if any, are left untouched.
+     * This allows a tokenizer to walk a buffer in place.
+     *
+     * @param src the bytes to parse.
+     * @param off the index of the first byte to parse.
+     * @param len the maximal number of bytes to parse.
+     * @param pos set to the index that follows the consumed bytes.
+     * @return the {@code double} denoted by the consumed bytes.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code src}.
+     * @throws NumberFormatException if no non-empty prefix is accepted.
+     * The index of {@code pos} is then left unchanged.
+     */
+    public static double parseDouble(byte[] src, int off, int len,
+            ParsePosition pos) {
+        checkFromIndexSize(off, len, src.length);
+        return parsePrefix(src, off, off + len, pos, false);
+    }
+
+    /**
+     * Parses the longest prefix of the ASCII bytes in
+     * {@code src[off, off + len)} that is accepted, and returns the
+     * {@code float} it denotes, as in {@link #parseFloat(String)}.
+     * See {@link #parseDouble(byte[], int, int, ParsePosition)} for the
+     * handling of {@code pos}.
+     *
+     * @param src the bytes to parse.
+     * @param off the index of the first byte to parse.
+     * @param len the maximal number of bytes to parse.
+     * @param pos set to the index that follows the consumed bytes.
+     * @return the {@code float} denoted by the consumed bytes.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code src}.
+     * @throws NumberFormatException if no non-empty prefix is accepted.
+     * The index of {@code pos} is then left unchanged.
+     */
+    public static float parseFloat(byte[] src, int off, int len,
+            ParsePosition pos) {
+        checkFromIndexSize(off, len, src.length);
+        return (float) parsePrefix(src, off, off + len, pos, true);
+    }
+
+    /**
+     * Parses the longest prefix of the ASCII bytes between the position
+     * and the limit of {@code src} that is accepted, and returns the
+     * {@code double} it denotes, as in {@link #parseDouble(String)}.
+     * The position is advanced past the consumed bytes, so that their
+     * number is the difference between the new and the old position.
+     *
+     * @param src the buffer to parse.
+     * @return the {@code double} denoted by the consumed bytes.
+     * @throws NumberFormatException if no non-empty prefix is accepted.
+     * The position of {@code src} is then left unchanged.
+     */
+    public static double parseDouble(ByteBuffer src) {
+        return parsePrefix(src, false);
+    }
+
+    /**
+     * Parses the longest prefix of the ASCII bytes between the position
+     * and the limit of {@code src} that is accepted, and returns the
+     * {@code float} it denotes, as in {@link #parseFloat(String)}.
+     * The position is advanced past the consumed bytes.
+     *
+     * @param src the buffer to parse.
+     * @return the {@code float} denoted by the consumed bytes.
+     * @throws NumberFormatException if no non-empty prefix is accepted.
+     * The position of {@code src} is then left unchanged.
+     */
+    public static float parseFloat(ByteBuffer src) {
+        return (float) parsePrefix(src, true);
+    }
+
+    private static double parsePrefix(ByteBuffer src, boolean isFloat) {
+        int from = src.position();
+        int to = src.limit();
+        if (src.hasArray()) {
+            // Parse in place, in the backing array
+            int base = src.arrayOffset();
+            int end = scanPrefix(src.array(), base + from, base + to);
+            double v = convert(src.array(), base + from, end, isFloat);
+            src.position(end - base);
+            return v;
+        }
+        /*
+        Copy the bytes of other buffers to an array: first a window that
+        covers any rendering, and all of the bytes only when the number
+        might extend beyond the window. This is the case when the scan
+        reaches the end of a full window, and also when it stops within
+        its last 2 bytes, as these might be an exponent indicator and a
+        sign whose digits follow the window.
+         */
+        byte[] a = new byte[Math.min(to - from, WINDOW)];
+        src.get(from, a);
+        int end = scan(a, 0, a.length);
+        if (end >= a.length - 2 && a.length < to - from) {
+            a = new byte[to - from];
+            src.get(from, a);
+            end = scan(a, 0, a.length);
+        }
+        if (end < 0) {
+            throw noNumberAt(from);
+        }
+        double v = convert(a, 0, end, isFloat);
+        src.position(from + end);
+        return v;
+    }
+
+    /*
+    Parses the longest accepted prefix of [from, to) and sets the index
+    of pos to its end.
+    When isFloat, the result is a float widened to double.
+     */
+    private static double parsePrefix(byte[] in, int from, int to,
+            ParsePosition pos, boolean isFloat) {
+        int end = scanPrefix(in, from, to);
+        double v = convert(in, from, end, isFloat);
+        pos.setIndex(end);
+        return v;
+    }
+
+    // Returns the end of the longest accepted prefix of [from, to).
+    private static int scanPrefix(byte[] in, int from, int to) {
+        int end = scan(in, from, to);
+        if (end < 0) {
+            throw noNumberAt(from);
+        }
+        return end;
+    }
+
+    private static NumberFormatException noNumberAt(int index) {
+        return new NumberFormatException("No number at index " + index);
+    }
+
+    /*
+    Parses all the characters of in.
+    When isFloat, the result is a float widened to double.
+     */
+    private static double parse(String in, boolean isFloat) {
+        if (scan(in, 0, in.length()) != in.length()) {
+            throw new NumberFormatException("For input string: \"" +
+                    in + "\"");
+        }
+        return convert(in, 0, in.length(), isFloat);
+    }
+
+    /*
+    The scanning and converting methods come in two variants, one on the
+    chars of a String and one on the ASCII bytes of an array, rather than
+    one on a CharSequence view of both. This keeps the accesses to the
+    input monomorphic, and allows bytes to be parsed without adapters.
+
+    Returns the end of the longest prefix of [from, to) that is accepted,
+    or -1 if there is none.
+     */
+    private static int scan(String in, int from, int to) {
+        int i = from;
+        if (i < to && isSign(in.charAt(i))) {
+            ++i;
+        }
+        if (in.startsWith("NaN", i) && i + 3 <= to) {
+            return i + 3;
+        }
+        if (in.startsWith("Infinity", i) && i + 8 <= to) {
+            return i + 8;
+        }
+        int d = i;
+        while (i < to && isDigit(in.charAt(i))) {
+            ++i;
+        }
+        int digits = i - d;
+        if (i < to && in.charAt(i) == '.') {
+            int f = ++i;
+            while (i < to && isDigit(in.charAt(i))) {
+                ++i;
+            }
+            digits += i - f;
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        if (i < to && isExponentIndicator(in.charAt(i))) {
+            // The exponent indicator is accepted only if digits follow
+            int j = i + 1;
+            if (j < to && isSign(in.charAt(j))) {
+                ++j;
+            }
+            int x = j;
+            while (j < to && isDigit(in.charAt(j))) {
+                ++j;
+            }
+            if (j != x) {
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    // As scan(String, int, int), on the ASCII bytes in [from, to).
+    private static int scan(byte[] in, int from, int to) {
+        int i = from;
+        if (i < to && isSign(in[i])) {
+            ++i;
+        }
+        if (startsWith(in, i, to, NAN)) {
+            return i + 3;
+        }
+        if (startsWith(in, i, to, INFINITY)) {
+            return i + 8;
+        }
+        int d = i;
+        while (i < to && isDigit(in[i])) {
+            ++i;
+        }
+        int digits = i - d;
+        if (i < to && in[i] == '.') {
+            int f = ++i;
+            while (i < to && isDigit(in[i])) {
+                ++i;
+            }
+            digits += i - f;
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        if (i < to && isExponentIndicator(in[i])) {
+            int j = i + 1;
+            if (j < to && isSign(in[j])) {
+                ++j;
+            }
+            int x = j;
+            while (j < to && isDigit(in[j])) {
+                ++j;
+            }
+            if (j != x) {
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    private static boolean startsWith(byte[] in, int i, int to, byte[] s) {
+        if (to - i < s.length) {
+            return false;
+        }
+        for (int k = 0; k < s.length; ++k) {
+            if (in[i + k] != s[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    The bytes compare equal to the ASCII chars they encode, and never to
+    a char when they are negative.
+     */
+    private static boolean isSign(int ch) {
+        return ch == '-' || ch == '+';
+    }
+
+    private static boolean isDigit(int ch) {
+        return '0' <= ch && ch <= '9';
+    }
+
+    private static boolean isExponentIndicator(int ch) {
+        return ch == 'e' || ch == 'E';
+    }
+
+    /*
+    Converts [from, to), which is known to be accepted.
+    When isFloat, the result is a float widened to double.
+     */
+    private static double convert(String in, int from, int to,
+            boolean isFloat) {
+        int i = from;
+        char ch = in.charAt(i);
+        boolean negative = ch == '-';
+        if (isSign(ch)) {
+            ch = in.charAt(++i);
+        }
+        if (ch == 'N') {
+            return Double.NaN;
+        }
+        if (ch == 'I') {
+            return infinity(negative);
+        }
+
+        /*
+        Accumulate at most MAX_DIGITS significant digits into c, which is
+        then to be read as unsigned, and adjust e such that the decimal
+        is c 10^e. The digits that do not fit are only remembered in
+        truncated, so the decimal then lies in (c 10^e, (c + 1) 10^e).
+         */
+        long c = 0;
+        int n = 0;
+        long e = 0;
+        boolean fraction = false;
+        boolean truncated = false;
+        for (; i < to; ++i) {
+            ch = in.charAt(i);
+            if (ch == '.') {
+                fraction = true;
+                continue;
+            }
+            if (isExponentIndicator(ch)) {
+                break;
+            }
+            int d = ch - '0';
+            if (n < MAX_DIGITS) {
+                if (c != 0 | d != 0) {
+                    c = 10 * c + d;
+                    ++n;
+                }
+                if (fraction) {
+                    --e;
+                }
+            } else {
+                truncated |= d != 0;
+                if (!fraction) {
+                    ++e;
+                }
+            }
+        }
+        if (i < to) {
+            // Exponents beyond 10^9 are clamped: they saturate anyway.
+            ch = in.charAt(++i);
+            boolean negativeExp = ch == '-';
+            if (isSign(ch)) {
+                ++i;
+            }
+            long x = 0;
+            for (; i < to; ++i) {
+                if (x < 1_000_000_000) {
+                    x = 10 * x + (in.charAt(i) - '0');
+                }
+            }
+            e += negativeExp ? -x : x;
+        }
+
+        long bits = toBits(c, n, e, truncated, isFloat);
+        if (bits == UNDECIDED) {
+            String s = in.substring(from, to);
+            return isFloat ? Float.parseFloat(s) : Double.parseDouble(s);
+        }
+        return toValue(bits, negative, isFloat);
+    }
+
+    // As convert(String, int, int, boolean), on the ASCII bytes.
+    private static double convert(byte[] in, int from, int to,
+            boolean isFloat) {
+        int i = from;
+        byte ch = in[i];
+        boolean negative = ch == '-';
+        if (isSign(ch)) {
+            ch = in[++i];
+        }
+        if (ch == 'N') {
+            return Double.NaN;
+        }
+        if (ch == 'I') {
+            return infinity(negative);
+        }
+
+        long c = 0;
+        int n = 0;
+        long e = 0;
+        boolean fraction = false;
+        boolean truncated = false;
+        for (; i < to; ++i) {
+            ch = in[i];
+            if (ch == '.') {
+                fraction = true;
+                continue;
+            }
+            if (isExponentIndicator(ch)) {
+                break;
+            }
+            int d = ch - '0';
+            if (n < MAX_DIGITS) {
+                if (c != 0 | d != 0) {
+                    c = 10 * c + d;
+                    ++n;
+                }
+                if (fraction) {
+                    --e;
+                }
+            } else {
+                truncated |= d != 0;
+                if (!fraction) {
+                    ++e;
+                }
+            }
+        }
+        if (i < to) {
+            ch = in[++i];
+            boolean negativeExp = ch == '-';
+            if (isSign(ch)) {
+                ++i;
+            }
+            long x = 0;
+            for (; i < to; ++i) {
+                if (x < 1_000_000_000) {
+                    x = 10 * x + (in[i] - '0');
+                }
+            }
+            e += negativeExp ? -x : x;
+        }
+
+        long bits = toBits(c, n, e, truncated, isFloat);
+        if (bits == UNDECIDED) {
+            String s = new String(in, from, to - from, ISO_8859_1);
+            return isFloat ? Float.parseFloat(s) : Double.parseDouble(s);
+        }
+        return toValue(bits, negative, isFloat);
+    }
+
+    private static double infinity(boolean negative) {
+        return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+
+    /*
+    Returns the bits of the positive float or double closest to the
+    decimal c 10^e described in convert(), or UNDECIDED.
+     */
+    private static long toBits(long c, int n, long e, boolean truncated,
+            boolean isFloat) {
+        return isFloat
+                ? toFloatBits(c, n, e, truncated)
+                : toDoubleBits(c, n, e, truncated);
+    }
+
+    // The float or double with the given bits and sign, as a double.
+    private static double toValue(long bits, boolean negative,
+            boolean isFloat) {
+        double v = isFloat
+                ? intBitsToFloat((int) bits)
+                : longBitsToDouble(bits);
+        return negative ? -v : v;
+    }
+
+    /*
+    Returns the bits of the positive double closest to the decimal
+    c 10^e described in convert(), or UNDECIDED.
+     */
+    private static long toDoubleBits(long c, int n, long e,
+            boolean truncated) {
+        if (c == 0) {
+            return 0;
+        }
+        if (!truncated && c >>> D_P == 0 && -22 <= e && e <= 22) {
+            // c and 10^|e| are exact doubles: a single rounding, see [2]
+            double v = e >= 0
+                    ? c * exactPow10[(int) e]
+                    : c / exactPow10[(int) -e];
+            return doubleToRawLongBits(v);
+        }
+        return toBits(c, n, e, truncated, D_P, D_W, D_INF_EXP, D_ZERO_EXP);
+    }
+
+    /*
+    Returns the bits of the positive float closest to the decimal
+    c 10^e described in convert(), or UNDECIDED.
+     */
+    private static long toFloatBits(long c, int n, long e,
+            boolean truncated) {
+        if (c == 0) {
+            return 0;
+        }
+        if (!truncated && c >>> D_P == 0 && -22 <= e && e <= 22) {
+            /*
+            As in toDoubleBits(), the double v is correctly rounded.
+            Rounding v to a float gives the float closest to c 10^e,
+            unless v lies exactly halfway between two floats.
+            Note that v lies well within the range of normal floats.
+             */
+            double v = e >= 0
+                    ? c * exactPow10[(int) e]
+                    : c / exactPow10[(int) -e];
+            long low = doubleToRawLongBits(v) & (1L << D_P - F_P) - 1;
+            if (low != 1L << D_P - F_P - 1) {
+                return floatToRawIntBits((float) v);
+            }
+        }
+        return toBits(c, n, e, truncated, F_P, F_W, F_INF_EXP, F_ZERO_EXP);
+    }
+
+    private static long toBits(long c, int n, long e, boolean truncated,
+            int p, int w, int infExp, int zeroExp) {
+        if (n + e >= infExp) {
+            return (long) ((1 << w) - 1) << p - 1;
+        }
+        if (n + e <= zeroExp) {
+            return 0;
+        }
+        if (e < MIN_EXP || e > MAX_EXP) {
+            return UNDECIDED;
+        }
+        long bits = toBits(c, (int) e, p, w);
+        if (truncated && bits != toBits(c + 1, (int) e, p, w)) {
+            return UNDECIDED;
+        }
+        return bits;
+    }
+
+    /*
+    Returns the bits of the positive floating-point value, of precision p
+    and exponent width w, that is closest to c 10^e, with c read as
+    unsigned and non-zero. Returns UNDECIDED when the approximation of
+    10^e in the table is not accurate enough to decide.
+    The approach is similar to the one in [3].
+
+    Let
+        10^e = beta 2^r    and    g = floor(beta) + 1
+    as in MathUtils.floorPow10p1dHigh(int), and let
+        cn = c 2^s,    2^63 <= cn < 2^64
+    Then
+        c 10^e = cn beta 2^(r-s)    and    cn g - cn <= cn beta < cn g
+    The product cn g is computed exactly, in 63 bit limbs, as
+        cn g = top 2^126 + drop,    0 <= drop < 2^126
+    where 2^62 <= top < 2^64. Whenever drop > cn, cn beta and cn g agree
+    on all bits of top and cn beta is not a multiple of 2^126, so rounding
+    top as if its dropped bits were not all zeroes is correct.
+
+    For 0 <= e <= MAX_EXACT_EXP, however, beta is an integer, so g - 1 is
+    used instead of g: the product is then exactly cn beta, and rounding
+    is always decided, including the ties.
+     */
+    private static long toBits(long c, int e, int p, int w) {
+        int s = numberOfLeadingZeros(c);
+        long cn = c << s;
+        long g1 = floorPow10p1dHigh(e);
+        boolean exact = 0 <= e && e <= MAX_EXACT_EXP;
+        long g0 = floorPow10p1dLow(e) - (exact ? 1 : 0);
+
+        // cn g = top 2^126 + mid 2^63 + q0
+        long top = productTop(cn, g1, g0);
+        long mid = productMid(cn, g1, g0);
+        long q0 = productLow(cn, g0);
+
+        // Split top into its p + 1 most significant bits m and rem
+        int sh = Long.SIZE - numberOfLeadingZeros(top) - (p + 1);
+        long m = top >>> sh;
+        long rem = top & (1L << sh) - 1;
+        if (!exact && rem == 0 && mid <= 1
+                && (mid == 0 || q0 <= (cn & MASK_63))) {
+            // drop <= cn
+            return UNDECIDED;
+        }
+
+        /*
+        be is the biased exponent of the result, unless it is subnormal.
+        Round m to p bits, or to fewer bits for a subnormal result:
+        the k bits of m that are dropped are r, to be compared to half.
+        Unless exact, the bits dropped from top are not all zeroes.
+         */
+        int be = sh + 2 + flog2pow10(e) - s + (p - 1) + (1 << w - 1) - 1;
+        int k = be > 0 ? 1 : Math.min(2 - be, Long.SIZE - 1);
+        long f = m >>> k;
+        long r = m & (1L << k) - 1;
+        long half = 1L << k - 1;
+        boolean sticky = (rem | mid | q0) != 0;
+        if (exact
+                ? r > half || r == half && (sticky || (f & 0x1) != 0)
+                : r >= half) {
+            f += 1;
+        }
+        if (be <= 0) {
+            // Subnormal, or the minimal normal value after rounding up
+            return f;
+        }
+        if (f == 1L << p) {
+            f >>>= 1;
+            be += 1;
+        }
+        if (be >= (1 << w) - 1) {
+            return (long) ((1 << w) - 1) << p - 1;
+        }
+        return (long) be << p - 1 | f & (1L << p - 1) - 1;
+    }
+
+}
@@ -21,13 +21,23 @@
 
 package math;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+import math.PathCounters.Path;
+
 import static java.lang.Double.*;
 import static java.lang.Long.numberOfLeadingZeros;
 import static java.lang.Math.multiplyHigh;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
 import static math.MathUtils.*;
 
 /**
- * This class exposes a method to render a {@code double} as a string.
+ * This class exposes methods to render a {@code double} as a string
+ * or as a sequence of ASCII bytes.
  *
  * @author Raffaello Giulietti
  */
@@ -72,25 +82,67 @@ final public class DoubleToDecimal {
     // Used in rop().
     private static final long MASK_63 = (1L << 63) - 1;
 
+    /*
+    The ranges of q where toShortDecimal() applies: up to 0 for the
+    integers, and where 10 <= 2^(-q-3) < 10^18 for the decimals,
+    as pow10[17] is the largest power of 10 at hand.
+     */
+    private static final int MAX_SHORT_Q = 0;
+    private static final int MAX_FRACTION_Q = -7;
+    private static final int MIN_SHORT_Q = -62;
+
     // Used for digit extraction in toChars() and its dependencies.
     private static final int MASK_28 = (1 << 28) - 1;
 
-    // For thread-safety, each thread gets its own instance of this class.
-    private static final ThreadLocal<DoubleToDecimal> threadLocal =
-            ThreadLocal.withInitial(DoubleToDecimal::new);
+    /**
+     * The maximal number of characters in the rendering of a {@code double}.
+     */
+    public static final int MAX_CHARS = H + 7;
+
+    /**
+     * The maximal number of characters in the fixed rendering of a
+     * {@code double}, as by {@link #toFixedString(double, int, RoundingMode)}:
+     * a sign, 309 integer digits, the point and 17 fraction digits.
+     */
+    public static final int MAX_FIXED_CHARS = 328;
+
+    /**
+     * The maximal number of characters in the ECMAScript rendering of a
+     * {@code double}, as by {@link #toEcmaString(double)}.
+     */
+    public static final int MAX_ECMA_CHARS = H + 8;
+
+    // The formats of the rendering of the selected decimal.
+    private static final int JAVA = 0;
+    private static final int ECMA = 1;
+    private static final int JSON = 2;
+
+    // Returned by toDecimal(), complemented, to classify its argument.
+    private static final int NON_SPECIAL = 0;
+    private static final int PLUS_ZERO = 1;
+    private static final int MINUS_ZERO = 2;
+    private static final int PLUS_INF = 3;
+    private static final int MINUS_INF = 4;
+    private static final int NAN = 5;
+
+    // Counts the paths taken, when PathCounters.ENABLED.
+    private static final PathCounters COUNTERS = PathCounters.forDouble();
 
     /*
-    Room for the longer of the forms
+    The renderers keep no state besides their arguments and locals.
+    The characters are written to an array, passed along with the index
+    of its rightmost valid character to the methods that write, which
+    return the updated index. The array has room for the longer of the
+    forms
         -ddddd.dddddddddddd         H + 2 characters
         -0.00ddddddddddddddddd      H + 5 characters
         -d.ddddddddddddddddE-eee    H + 7 characters
-    where there are H digits d
+    where there are H digits d, and one more character in ECMA format.
+    The byte[] and ByteBuffer sinks and the bulk methods render directly
+    into the array of the destination whenever it has room, and thus do
+    not allocate. Only the String and StringBuilder sinks, and the
+    destinations with less room, need a new array.
      */
-    private final byte[] buf = new byte[H + 7];
-
-    // Index into buf of rightmost valid character.
-    private int index;
-
     private DoubleToDecimal() {
     }
 
@@ -208,14 +260,746 @@ final public class DoubleToDecimal {
      * @return a string rendering of the argument.
      */
     public static String toString(double v) {
-        return threadLocalInstance().toDecimal(v);
+        ToDecimalSampleEvent event = Events.sample();
+        String s = toDecimalString(v, JAVA);
+        if (event != null) {
+            event.finish("double", v, s.length());
+        }
+        return s;
+    }
+
+    /**
+     * Writes the rendering of the {@code double} argument into the array
+     * {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of {@link #toString(double)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toBytes(double v, byte[] dst, int off) {
+        ToDecimalSampleEvent event = Events.sample();
+        int len = toDecimalBytes(v, dst, off, JAVA);
+        if (event != null) {
+            event.finish("double", v, len);
+        }
+        return len;
+    }
+
+    /**
+     * Writes the rendering of the {@code double} argument into the buffer
+     * {@code dst}, starting at its current position,
+     * and then advances the position.
+     *
+     * <p>The bytes written are exactly those of {@link #toBytes(double,
+     * byte[], int)}. The buffer can be a heap or a direct buffer.
+     * When fewer bytes than needed remain in {@code dst}, an exception is
+     * thrown and neither the content nor the position of {@code dst}
+     * are changed. A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param dst the destination buffer.
+     * @return the number of bytes written.
+     * @throws BufferOverflowException if fewer than the needed bytes
+     * remain in {@code dst}.
+     * @throws java.nio.ReadOnlyBufferException if {@code dst} is read-only.
+     */
+    public static int toBytes(double v, ByteBuffer dst) {
+        ToDecimalSampleEvent event = Events.sample();
+        int len = toDecimalBytes(v, dst);
+        if (event != null) {
+            event.finish("double", v, len);
+        }
+        return len;
+    }
+
+    /**
+     * Renders {@code len} elements of {@code a}, starting at index
+     * {@code off}, and appends the renderings to {@code dst},
+     * separated by {@code sep}.
+     *
+     * <p>Each element is rendered as by {@link #toBytes(double, byte[], int)}.
+     * Nothing is appended before the first or after the last rendering.
+     * The characters of {@code sep} are appended as ISO-8859-1 bytes.
+     *
+     * <p>The per-call overhead of this method is incurred once for the
+     * whole slice, and the renderings are written directly into
+     * {@code dst}, rather than once per element.
+     *
+     * @param a the array of {@code double}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(double[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        checkFromIndexSize(off, len, a.length);
+        BulkToDecimalEvent event = Events.bulk(COUNTERS, dst);
+        toDecimalBytes(a, off, len, sep.getBytes(ISO_8859_1), dst, JAVA);
+        if (event != null) {
+            event.finish("double", "java", len, dst);
+        }
+        return dst;
+    }
+
+    /**
+     * Appends the rendering of the {@code double} argument to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(double)}, but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code double} to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, double v) {
+        return appendDecimal(sb, v, JAVA);
+    }
+
+    /**
+     * Appends the rendering of the {@code double} argument to {@code a}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(double)}, but no intermediate {@link String} is created.
+     *
+     * @param a the {@link Appendable} to append to.
+     * @param v the {@code double} to be rendered.
+     * @return {@code a}.
+     * @throws IOException if {@code a} throws it.
+     */
+    public static Appendable appendTo(Appendable a, double v)
+            throws IOException {
+        if (a instanceof StringBuilder) {
+            return appendTo((StringBuilder) a, v);
+        }
+        return appendDecimal(a, v);
+    }
+
+    /**
+     * Sets {@code dec} to the decimal selected to represent the
+     * {@code double} argument, without formatting it.
+     *
+     * <p>For a finite non-zero {@code v}, this is the decimal
+     * <i>d</i><sub><code>v</code></sub> described in
+     * {@link #toString(double)}, with the sign of {@code v}.
+     * For the zeroes, {@code dec} is set to a zero with the sign of
+     * {@code v}. For the infinities and NaN, {@code dec} is left unchanged.
+     *
+     * @param v the {@code double} to be split.
+     * @param dec the holder for the selected decimal.
+     * @return whether {@code v} is finite, that is, whether {@code dec}
+     * has been set.
+     */
+    public static boolean split(double v, Decimal dec) {
+        return splitDecimal(v, dec);
+    }
+
+    /**
+     * Returns the number of characters of the rendering of the
+     * {@code double} argument, without rendering it.
+     *
+     * <p>This is the length of {@link #toString(double)}, and hence the
+     * number of bytes written by {@link #toBytes(double, byte[], int)}.
+     * It is determined from the number of digits of the selected decimal
+     * and from the format chosen for it.
+     *
+     * @param v the {@code double} whose rendering is measured.
+     * @return the number of characters of the rendering of {@code v}.
+     */
+    public static int length(double v) {
+        return decimalLength(v, new Decimal());
+    }
+
+    /**
+     * Returns the sum of the lengths, as by {@link #length(double)}, of
+     * {@code len} elements of {@code a}, starting at index {@code off}.
+     *
+     * <p>The separators are not included: the bytes appended by
+     * {@link #toBytes(double[], int, int, String, ByteBuilder)} amount to
+     * this sum plus {@code len - 1} times the length of the separator,
+     * when {@code len > 0}.
+     *
+     * @param a the array of {@code double}s whose renderings are measured.
+     * @param off the index in {@code a} of the first element to measure.
+     * @param len the number of elements to measure.
+     * @return the sum of the lengths of the renderings.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static long length(double[] a, int off, int len) {
+        checkFromIndexSize(off, len, a.length);
+        Decimal dec = new Decimal();
+        long sum = 0;
+        for (int i = off, end = off + len; i < end; ++i) {
+            sum += decimalLength(a[i], dec);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a string rendering of the {@code double} argument,
+     * correctly rounded to {@code precision} significant digits.
+     * This is a fast replacement for {@code String.format("%.Ng", v)}.
+     *
+     * <p>The rendering differs from the one of {@link #toString(double)}
+     * only in the selection of the decimal: rather than the shortest
+     * decimal that rounds to {@code v}, it is the decimal with exactly
+     * {@code precision} digits <i>d</i><sub>1</sub>&hellip;<!--
+     * --><i>d</i><sub><code>precision</code></sub>, the last of which
+     * might be zeroes, closest to the exact value of {@code v}.
+     * Ties are resolved according to {@code mode}, which must be either
+     * {@link RoundingMode#HALF_EVEN} or {@link RoundingMode#HALF_UP}.
+     * The decimal is then formatted as described in
+     * {@link #toString(double)}, with <i>n</i> = {@code precision}.
+     * For example, with a precision of 3, 12345 is formatted as
+     * {@code 12300.0}, 1.5 as {@code 1.50} and 10<sup>23</sup> as
+     * {@code 1.00E23}.
+     * The zeroes are formatted as {@code 0.} followed by
+     * {@code precision} - 1 zeroes, but at least one.
+     * The infinities and NaN are formatted as in {@link #toString(double)}.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param precision the number of significant digits,
+     * from 1 to 17.
+     * @param mode the rounding mode.
+     * @return a string rendering of the argument.
+     * @throws IllegalArgumentException if {@code precision} or
+     * {@code mode} are not supported.
+     */
+    public static String toString(double v, int precision, RoundingMode mode) {
+        return toPrecisionString(v, checkPrecision(precision),
+                DecimalRounding.isHalfEven(mode));
+    }
+
+    /**
+     * Appends the rendering of the {@code double} argument, correctly
+     * rounded to {@code precision} significant digits, to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(double, int, RoundingMode)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code double} to be rendered.
+     * @param precision the number of significant digits,
+     * from 1 to 17.
+     * @param mode the rounding mode.
+     * @return {@code sb}.
+     * @throws IllegalArgumentException if {@code precision} or
+     * {@code mode} are not supported.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, double v,
+            int precision, RoundingMode mode) {
+        return appendPrecision(sb, v, checkPrecision(precision),
+                DecimalRounding.isHalfEven(mode));
+    }
+
+    /**
+     * Returns a string rendering of the {@code double} argument in plain
+     * notation, correctly rounded to {@code fractionDigits} digits after
+     * the point.
+     * This is a fast replacement for {@code String.format("%.Nf", v)}.
+     *
+     * <p>The rendering consists of a minus sign, if {@code v} is negative,
+     * including -0 and the negative values that round to 0, followed by
+     * the integer part in plain decimal, with no leading zeroes except
+     * for a single 0, and, unless {@code fractionDigits} is 0, by
+     * {@code .} and exactly {@code fractionDigits} digits.
+     * The digits are those of the exact value of {@code v}, rounded to
+     * {@code fractionDigits} digits after the point, with ties resolved
+     * according to {@code mode}, which must be either
+     * {@link RoundingMode#HALF_EVEN} or {@link RoundingMode#HALF_UP}.
+     * For example, with 2 fraction digits, 1.005 is formatted as
+     * {@code 1.00}, since its exact value is slightly less than 1.005,
+     * 0.125 is formatted as {@code 0.12} with {@code HALF_EVEN} and as
+     * {@code 0.13} with {@code HALF_UP}, and 10<sup>20</sup> as
+     * {@code 100000000000000000000.00}.
+     * The infinities and NaN are formatted as in {@link #toString(double)}.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode.
+     * @return a string rendering of the argument.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     */
+    public static String toFixedString(double v, int fractionDigits,
+            RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).toFixedString();
+    }
+
+    /**
+     * Writes the rendering of the {@code double} argument, correctly
+     * rounded to {@code fractionDigits} digits after the point, into
+     * the array {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of
+     * {@link #toFixedString(double, int, RoundingMode)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_FIXED_CHARS} bytes always suffices.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toFixedBytes(double v, byte[] dst, int off,
+            int fractionDigits, RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).toBytes(dst, off);
+    }
+
+    /**
+     * Appends the rendering of the {@code double} argument, correctly
+     * rounded to {@code fractionDigits} digits after the point,
+     * to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toFixedString(double, int, RoundingMode)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code double} to be rendered.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode.
+     * @return {@code sb}.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     */
+    public static StringBuilder appendFixedTo(StringBuilder sb, double v,
+            int fractionDigits, RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).appendTo(sb);
+    }
+
+    /**
+     * Returns a string rendering of the {@code double} argument,
+     * as by the ECMAScript abstract operation Number::toString(x),
+     * that is, as by {@code x.toString()} in JavaScript.
+     *
+     * <p>The selected decimal <i>d</i>&times;10<sup><i>i</i></sup>
+     * is the one of {@link #toString(double)}, except for
+     * {@link Double#MIN_VALUE} and 2&times;{@link Double#MIN_VALUE},
+     * where ECMAScript selects the shorter 5&times;10<sup>-324</sup> and
+     * 10<sup>-323</sup> rather than a decimal of length 2.
+     * With <i>n</i> the length of <i>d</i> and
+     * <i>e</i> = <i>n</i> + <i>i</i>, the decimal is formatted as
+     * <ul>
+     * <li>the digits of <i>d</i> followed by <i>i</i> zeroes,
+     * when 0 &le; <i>i</i> and <i>e</i> &le; 21, as in {@code 100}
+     * or {@code 100000000000000000000}.
+     * <li>the first <i>e</i> digits of <i>d</i>, {@code .} and the
+     * remaining digits, when <i>i</i> &lt; 0 &lt; <i>e</i> &le; 21,
+     * as in {@code 12.5}.
+     * <li>{@code 0.} followed by -<i>e</i> zeroes and the digits of
+     * <i>d</i>, when -6 &lt; <i>e</i> &le; 0, as in {@code 0.000001}.
+     * <li>the first digit of <i>d</i>, followed by {@code .} and the
+     * remaining digits, if any, and by {@code e}, the sign {@code +} or
+     * {@code -} and the magnitude of <i>e</i> - 1 otherwise, as in
+     * {@code 1e+21}, {@code 1.5e-7} or {@code 5e-324}.
+     * </ul>
+     * A negative {@code v} is rendered with a leading '{@code -}'.
+     * Both zeroes are rendered as {@code 0}, and the infinities and NaN
+     * as in {@link #toString(double)}.
+     *
+     * @param v the {@code double} to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public static String toEcmaString(double v) {
+        return toDecimalString(v, ECMA);
     }
 
-    private static DoubleToDecimal threadLocalInstance() {
-        return threadLocal.get();
+    /**
+     * Writes the ECMAScript rendering of the {@code double} argument into
+     * the array {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of
+     * {@link #toEcmaString(double)}, one byte per character, but no
+     * {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_ECMA_CHARS} bytes always suffices.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toEcmaBytes(double v, byte[] dst, int off) {
+        return toDecimalBytes(v, dst, off, ECMA);
     }
 
-    private String toDecimal(double v) {
+    /**
+     * Appends the ECMAScript rendering of the {@code double} argument
+     * to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toEcmaString(double)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code double} to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendEcmaTo(StringBuilder sb, double v) {
+        return appendDecimal(sb, v, ECMA);
+    }
+
+    /**
+     * Returns the shortest JSON number text for the decimal selected by
+     * {@link #toString(double)}.
+     *
+     * <p>Let <i>d</i>&times;10<sup><i>i</i></sup> be the selected decimal,
+     * with <i>d</i> of length <i>n</i>, and let
+     * <i>e</i> = <i>n</i> + <i>i</i>.
+     * The rendering is the shortest of
+     * <ul>
+     * <li>the plain notation, as in {@code 100}, {@code 12.5} or
+     * {@code 0.001}, without a trailing {@code .0}.
+     * <li>the first digit of <i>d</i>, followed by {@code .} and the
+     * remaining digits, and by {@code e} and <i>e</i> - 1,
+     * as in {@code 1.7976931348623157e308}.
+     * <li>the digits of <i>d</i> followed by {@code e} and <i>i</i>,
+     * as in {@code 1e7} or {@code 123e-9}.
+     * </ul>
+     * with ties resolved in this order.
+     * A negative {@code v} is rendered with a leading '{@code -}' and the
+     * zeroes as {@code 0} and {@code -0}.
+     * Exponents carry a {@code -} sign but no {@code +} sign.
+     * As JSON has no representation for them, the infinities and NaN are
+     * rendered as {@code null}, as by {@code JSON.stringify()} in
+     * JavaScript.
+     *
+     * @param v the {@code double} to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public static String toJsonString(double v) {
+        return toDecimalString(v, JSON);
+    }
+
+    /**
+     * Writes the JSON rendering of the {@code double} argument into
+     * the array {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of
+     * {@link #toJsonString(double)}, one byte per character, but no
+     * {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * @param v the {@code double} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toJsonBytes(double v, byte[] dst, int off) {
+        return toDecimalBytes(v, dst, off, JSON);
+    }
+
+    /**
+     * Renders {@code len} elements of {@code a}, starting at index
+     * {@code off}, as JSON numbers and appends the renderings to
+     * {@code dst}, separated by {@code sep}.
+     *
+     * <p>This is the analogue of
+     * {@link #toBytes(double[], int, int, String, ByteBuilder)}, with
+     * each element rendered as by {@link #toJsonString(double)}.
+     *
+     * @param a the array of {@code double}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toJsonBytes(double[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        checkFromIndexSize(off, len, a.length);
+        BulkToDecimalEvent event = Events.bulk(COUNTERS, dst);
+        toDecimalBytes(a, off, len, sep.getBytes(ISO_8859_1), dst, JSON);
+        if (event != null) {
+            event.finish("double", "json", len, dst);
+        }
+        return dst;
+    }
+
+    /**
+     * Appends the JSON rendering of the {@code double} argument
+     * to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toJsonString(double)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code double} to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendJsonTo(StringBuilder sb, double v) {
+        return appendDecimal(sb, v, JSON);
+    }
+
+    private static int checkPrecision(int precision) {
+        if (precision < 1 || precision > H) {
+            throw new IllegalArgumentException(
+                    "precision must be in [1, " + H + "]");
+        }
+        return precision;
+    }
+
+    // The room needed for the longest rendering in format.
+    private static int room(int format) {
+        return format == ECMA ? MAX_ECMA_CHARS : MAX_CHARS;
+    }
+
+    private static String toDecimalString(double v, int format) {
+        byte[] buf = new byte[room(format)];
+        int index = toDecimal(buf, -1, format, v, null);
+        return index >= 0 ? charsToString(buf, index) : special(format, ~index);
+    }
+
+    private static String toPrecisionString(double v, int precision,
+            boolean halfEven) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toPrecision(buf, -1, v, precision, halfEven);
+        return index >= 0 ? charsToString(buf, index) : special(JAVA, ~index);
+    }
+
+    private static StringBuilder appendPrecision(StringBuilder sb, double v,
+            int precision, boolean halfEven) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toPrecision(buf, -1, v, precision, halfEven);
+        return index >= 0
+                ? appendChars(sb, buf, index)
+                : sb.append(special(JAVA, ~index));
+    }
+
+    private static String special(int format, int type) {
+        if (format == JSON) {
+            return type == PLUS_ZERO ? "0" : type == MINUS_ZERO ? "-0" : "null";
+        }
+        switch (type) {
+            case PLUS_ZERO: return format == ECMA ? "0" : "0.0";
+            case MINUS_ZERO: return format == ECMA ? "0" : "-0.0";
+            case PLUS_INF: return "Infinity";
+            case MINUS_INF: return "-Infinity";
+            default: return "NaN";
+        }
+    }
+
+    private static boolean splitDecimal(double v, Decimal dec) {
+        // Splitting writes no characters
+        int type = ~toDecimal(null, -1, JAVA, v, dec);
+        if (type == PLUS_ZERO || type == MINUS_ZERO) {
+            dec.setZero();
+        } else if (type != NON_SPECIAL) {
+            return false;
+        }
+        dec.setNegative(doubleToRawLongBits(v) < 0);
+        return true;
+    }
+
+    /*
+    Returns the length of the rendering of v, as formatted by toChars().
+    Let d 10^i be the decimal selected in dec, where d has n digits and
+    no trailing zeroes, so that the decimal is 0.d 10^e, with e = n + i.
+    Then the formats are
+        0 < e <= 7      d.ddd, with at least 1 fraction digit
+        -3 < e <= 0     0.00ddd, with -e leading zeroes
+        otherwise       d.ddE-x, with at least 2 digits
+     */
+    private static int decimalLength(double v, Decimal dec) {
+        // Measuring writes no characters
+        int type = ~toDecimal(null, -1, JAVA, v, dec);
+        if (type != NON_SPECIAL) {
+            return special(JAVA, type).length();
+        }
+        long d = dec.significand();
+        int n = flog10pow2(Long.SIZE - numberOfLeadingZeros(d));
+        if (d >= pow10[n]) {
+            n += 1;
+        }
+        int e = n + dec.exponent();
+        int len = (int) (doubleToRawLongBits(v) >>> 63);
+        if (0 < e && e <= 7) {
+            return len + e + 1 + Math.max(n - e, 1);
+        }
+        if (-3 < e && e <= 0) {
+            return len + 2 - e + n;
+        }
+        return len + Math.max(n, 2) + 2 + exponentLength(e - 1);
+    }
+
+    /*
+    Renders v directly into dst when it has room for the longest rendering,
+    and otherwise into a new array, to be copied to dst only when it fits.
+    Thus, nothing is allocated in the common case, and dst is left
+    unchanged when the rendering does not fit.
+
+    Rendering writes ahead of the final length, within the room. The room
+    is therefore saved beforehand, as 4 possibly overlapping longs, and the
+    bytes past the rendering are restored afterwards.
+     */
+    private static int toDecimalBytes(double v, byte[] dst, int off,
+            int format) {
+        int room = room(format);
+        if (off >= 0 && dst.length - off >= room) {
+            int last = off + room - 8;
+            long s0 = getLong(dst, off);
+            long s1 = getLong(dst, off + 8);
+            long s2 = getLong(dst, off + 16);
+            long s3 = getLong(dst, last);
+            int len = toDecimalChars(dst, off - 1, format, v) - off + 1;
+            restore(dst, off, len, s0);
+            restore(dst, off + 8, len - 8, s1);
+            restore(dst, off + 16, len - 16, s2);
+            restore(dst, last, len - (room - 8), s3);
+            return len;
+        }
+        byte[] buf = new byte[room];
+        int len = toDecimalChars(buf, -1, format, v) + 1;
+        checkFromIndexSize(off, len, dst.length);
+        System.arraycopy(buf, 0, dst, off, len);
+        return len;
+    }
+
+    // As toDecimalBytes(double, byte[], int, int),
+    // directly in heap buffers with enough room, otherwise by way of the
+    // scratch array of the thread.
+    private static int toDecimalBytes(double v, ByteBuffer dst) {
+        int p = dst.position();
+        if (dst.hasArray() && dst.remaining() >= MAX_CHARS) {
+            int len = toDecimalBytes(v, dst.array(), dst.arrayOffset() + p,
+                    JAVA);
+            dst.position(p + len);
+            return len;
+        }
+        byte[] buf = scratch();
+        int len = toDecimalChars(buf, -1, JAVA, v) + 1;
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        dst.put(buf, 0, len);
+        return len;
+    }
+
+    private static StringBuilder appendDecimal(StringBuilder sb, double v,
+            int format) {
+        byte[] buf = new byte[room(format)];
+        int index = toDecimal(buf, -1, format, v, null);
+        if (index < 0) {
+            return sb.append(special(format, ~index));
+        }
+        return appendChars(sb, buf, index);
+    }
+
+    private static StringBuilder appendChars(StringBuilder sb, byte[] buf,
+            int index) {
+        sb.ensureCapacity(sb.length() + index + 1);
+        for (int i = 0; i <= index; ++i) {
+            sb.append((char) buf[i]);
+        }
+        return sb;
+    }
+
+    private static Appendable appendDecimal(Appendable a, double v)
+            throws IOException {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toDecimal(buf, -1, JAVA, v, null);
+        if (index < 0) {
+            return a.append(special(JAVA, ~index));
+        }
+        for (int i = 0; i <= index; ++i) {
+            a.append((char) buf[i]);
+        }
+        return a;
+    }
+
+    private static ByteBuilder toDecimalBytes(double[] a, int off, int len,
+            byte[] sep, ByteBuilder dst, int format) {
+        /*
+        Render directly into the array of dst, growing it only when the
+        room left might not suffice for one more separator and rendering.
+         */
+        int room = sep.length + MAX_CHARS;
+        byte[] buf = dst.bytes;
+        int index = dst.count - 1;
+        for (int i = off, end = off + len; i < end; ++i) {
+            if (index + room >= buf.length) {
+                dst.count = index + 1;
+                dst.ensureCapacity(dst.count + room);
+                buf = dst.bytes;
+            }
+            if (i != off) {
+                for (byte b : sep) {
+                    buf[++index] = b;
+                }
+            }
+            index = toDecimalChars(buf, index, format, a[i]);
+        }
+        dst.count = index + 1;
+        return dst;
+    }
+
+    /*
+    Renders v into buf after index, including the special values,
+    and returns the index of the last character.
+     */
+    private static int toDecimalChars(byte[] buf, int index, int format,
+            double v) {
+        int last = toDecimal(buf, index, format, v, null);
+        if (last >= 0) {
+            return last;
+        }
+        String s = special(format, ~last);
+        for (int i = 0; i < s.length(); ++i) {
+            buf[++index] = (byte) s.charAt(i);
+        }
+        return index;
+    }
+
+    /*
+    Renders v into buf after index and returns the index of the last
+    character when v is finite and non-zero, or sets dec to the selected
+    decimal and returns ~NON_SPECIAL when dec != null.
+    Otherwise, returns the complement ~type of the type of v and leaves
+    buf and dec unspecified.
+    Thus, the result is non-negative iff a rendering is left in buf.
+     */
+    private static int toDecimal(byte[] buf, int index, int format, double v,
+            Decimal dec) {
         /*
         For details not discussed here see reference [2].
 
@@ -232,27 +1016,77 @@ final public class DoubleToDecimal {
         long t = bits & T_MASK;
         int bq = (int) (bits >>> P - 1) & BQ_MASK;
         if (bq < BQ_MASK) {
-            index = -1;
-            if (bits < 0) {
-                append('-');
+            if (bits < 0 & dec == null) {
+                buf[++index] = '-';
             }
             if (bq != 0) {
                 // normal value
-                return toDecimal(Q_MIN - 1 + bq, C_MIN | t);
+                int q = Q_MIN - 1 + bq;
+                long c = C_MIN | t;
+                if (q <= MAX_SHORT_Q && q >= MIN_SHORT_Q) {
+                    return toShortDecimal(buf, index, format,
+                            Math.abs(v), q, c, dec);
+                }
+                return toDecimal(buf, index, format, q, c, dec);
             }
             if (t != 0) {
                 // subnormal value
-                return toDecimal(Q_MIN, t);
+                return toDecimal(buf, index, format, Q_MIN, t, dec);
             }
-            return bits == 0 ? "0.0" : "-0.0";
+            return ~(bits == 0 ? PLUS_ZERO : MINUS_ZERO);
         }
         if (t != 0) {
-            return "NaN";
+            return ~NAN;
+        }
+        return ~(bits > 0 ? PLUS_INF : MINUS_INF);
+    }
+
+    /*
+    Fast paths for normal values v = c 2^q > 0, with
+    MIN_SHORT_Q <= q <= MAX_SHORT_Q, that are integers or decimals with
+    few fraction digits. They select the same decimal as toDecimal(q, c),
+    but without its three 126-bit multiplications and its comparisons.
+    Falls back to toDecimal(q, c) when v is neither.
+
+    When -P < q <= 0 and the -q least significant bits of c are all 0,
+    v is an integer below 2^P, and has length n, say.
+    Now, Rv extends at most 2^(q-1) <= 1/2 on either side of v, so it
+    contains no other decimal of length n or shorter, as these differ
+    from v by at least 1. Thus, v itself is selected.
+
+    Otherwise, when q <= MAX_FRACTION_Q, let J = flog10pow2(-q - 3),
+    so that 1 <= J <= 17 and
+        2^(q+3) <= 10^(-J)    and    v 10^J < 2^(q+P) 10^J <= 2^(P-3)
+    The decimals with J fraction digits are then spaced at least
+    8 2^q apart, so at most one of them, say d, lies in Rv. When d lies
+    in Rv, it is the shortest, as the shorter decimals in Rv would be
+    decimals with J fraction digits as well, and is the closest.
+    The candidate is d = k 10^(-J), where k is v 10^J rounded to an
+    integer. Whatever the rounding errors in computing k, d lies in Rv
+    iff the double closest to k / 10^J is v, as computed by the
+    correctly rounded division of k < 2^P by the exact double 10^J.
+    A k off by one due to these errors merely fails the check.
+     */
+    private static int toShortDecimal(byte[] buf, int index, int format,
+            double v, int q, long c, Decimal dec) {
+        if (q > -P && (c & (1L << -q) - 1) == 0) {
+            COUNTERS.increment(Path.SHORT_DECIMAL);
+            return toChars(buf, index, format, c >> -q, 0, dec);
+        }
+        if (q <= MAX_FRACTION_Q) {
+            int j = flog10pow2(-q - 3);
+            double p = pow10[j];
+            long k = (long) (v * p + 0.5);
+            if (k / p == v) {
+                COUNTERS.increment(Path.SHORT_DECIMAL);
+                return toChars(buf, index, format, k, -j, dec);
+            }
         }
-        return bits > 0 ? "Infinity" : "-Infinity";
+        return toDecimal(buf, index, format, q, c, dec);
     }
 
-    private String toDecimal(int q, long c) {
+    private static int toDecimal(byte[] buf, int index, int format, int q,
+            long c, Decimal dec) {
         // For full details see reference [1].
         int out = (int) c & 0x1;
         long cb;
@@ -262,12 +1096,14 @@ final public class DoubleToDecimal {
         int h;
         if (c != C_MIN | q == Q_MIN) {
             // regular spacing
+            COUNTERS.increment(Path.REGULAR_SPACING);
             cb = c << 1;
             cbr = cb + 1;
             k = flog10pow2(q);
             h = q + flog2pow10(-k) + 3;
         } else {
             // irregular spacing
+            COUNTERS.increment(Path.IRREGULAR_SPACING);
             cb = c << 2;
             cbr = cb + 2;
             k = flog10threeQuartersPow2(q);
@@ -282,24 +1118,36 @@ final public class DoubleToDecimal {
         long vbr = rop(g1, g0, cbr << h);
 
         long s = vb >> 2;
-        if (s >= 100) {
+        if (s >= 100 || format == ECMA && s >= 10) {
             /*
             sp10 = 10 s',    tp10 = 10 t' = sp10 + 10
             This is the only place where a division (the %) is carried out.
+            For 10 <= s < 100, which happens only for small subnormals,
+            the shorter decimal is preferred in ECMA format, even when a
+            decimal of length 2 is closer.
              */
             long sp10 = s - s % 10;
             long tp10 = sp10 + 10;
             boolean upin = vbl + out <= sp10 << 2;
             boolean wpin = (tp10 << 2) + out <= vbr;
             if (upin != wpin) {
-                return toChars(upin ? sp10 : tp10, k);
+                COUNTERS.increment(Path.SHORTER_DECIMAL);
+                return toChars(buf, index, format, upin ? sp10 : tp10, k, dec);
             }
         } else if (s < 10) {
             switch ((int) s) {
                 case 4:
-                    return toChars(49, -325); // 4.9 10^(-324)
+                    COUNTERS.increment(Path.SUBNORMAL_CASE);
+                    // 4.9 10^(-324), but the shortest 5 10^(-324) in ECMA
+                    return format == ECMA
+                            ? toChars(buf, index, format, 5, -324, dec)
+                            : toChars(buf, index, format, 49, -325, dec);
                 case 9:
-                    return toChars(99, -325); // 9.9 10^(-324)
+                    COUNTERS.increment(Path.SUBNORMAL_CASE);
+                    // 9.9 10^(-324), but the shortest 10^(-323) in ECMA
+                    return format == ECMA
+                            ? toChars(buf, index, format, 1, -323, dec)
+                            : toChars(buf, index, format, 99, -325, dec);
             }
         }
         long t = s + 1;
@@ -307,11 +1155,67 @@ final public class DoubleToDecimal {
         boolean win = (t << 2) + out <= vbr;
         if (uin != win) {
             // Exactly one of s 10^k or t 10^k lies in Rv.
-            return toChars(uin ? s : t, k);
+            return toChars(buf, index, format, uin ? s : t, k, dec);
         }
         // Both s 10^k and t 10^k lie in Rv: determine the one closest to v.
+        COUNTERS.increment(Path.BOTH_IN_RV);
         long cmp = vb - (s + t << 1);
-        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k);
+        return toChars(buf, index, format,
+                cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k, dec);
+    }
+
+    /*
+    Renders v, correctly rounded to precision significant digits, into buf
+    after index and returns the index of the last character when v is
+    finite. Otherwise, returns ~type, as toDecimal(), and leaves buf
+    unspecified.
+     */
+    private static int toPrecision(byte[] buf, int index, double v,
+            int precision, boolean halfEven) {
+        long bits = doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            return ~(t != 0 ? NAN : bits > 0 ? PLUS_INF : MINUS_INF);
+        }
+        if (bits < 0) {
+            buf[++index] = '-';
+        }
+        if (bq == 0 && t == 0) {
+            buf[++index] = '0';
+            buf[++index] = '.';
+            for (int i = 1; i < Math.max(precision, 2); ++i) {
+                buf[++index] = '0';
+            }
+            return index;
+        }
+        int q = bq != 0 ? Q_MIN - 1 + bq : Q_MIN;
+        long c = bq != 0 ? C_MIN | t : t;
+
+        /*
+        Let v = c 2^q, with 2^(n-1) <= c 2^q < 2^n, and k = flog10pow2(n).
+        Then
+            10^(k-1) <= 2^(n-1) <= v < 2^n < 10^(k+1)
+        so rounding v / 10^(k-precision+1) fails to have precision digits
+        only when its integer part is too low, and then 10^(k-1) <= v.
+         */
+        int k = flog10pow2(q + Long.SIZE - numberOfLeadingZeros(c))
+                - precision + 1;
+        long min = pow10[precision - 1];
+        long f = DecimalRounding.round(c, q, k, min, halfEven);
+        if (f == DecimalRounding.LOW) {
+            k -= 1;
+            f = DecimalRounding.round(c, q, k, min, halfEven);
+        }
+        if (f == DecimalRounding.UNDECIDED) {
+            f = DecimalRounding.roundExactly(v, k, halfEven);
+        }
+        if (f == pow10[precision]) {
+            // Rounded up to one more digit
+            f = min;
+            k += 1;
+        }
+        return toChars(buf, index, JAVA, precision, f, k);
     }
 
     private static long rop(long g1, long g0, long cp) {
@@ -325,9 +1229,25 @@ final public class DoubleToDecimal {
     }
 
     /*
-    Formats the decimal f 10^e.
+    Formats the shortest decimal f 10^e, or sets dec to it when dec != null,
+    and returns as toDecimal().
      */
-    private String toChars(long f, int e) {
+    private static int toChars(byte[] buf, int index, int format, long f,
+            int e, Decimal dec) {
+        if (dec != null) {
+            dec.set(f, e);
+            return ~NON_SPECIAL;
+        }
+        return toChars(buf, index, format, 0, f, e);
+    }
+
+    /*
+    Formats the decimal f 10^e into buf after index, with precision
+    significant digits, or 0 for the shortest rendering, and returns the
+    index of the last character.
+     */
+    private static int toChars(byte[] buf, int index, int format,
+            int precision, long f, int e) {
         /*
         For details not discussed here see reference [3].
 
@@ -369,136 +1289,286 @@ final public class DoubleToDecimal {
         int h = (int) (hm * 1_441_151_881L >>> 57);
         int m = (int) (hm - 100_000_000 * h);
 
+        if (format == ECMA) {
+            return toEcmaChars(buf, index, h, m, l, e);
+        }
+        if (format == JSON) {
+            return toJsonChars(buf, index, h, m, l, e);
+        }
         if (0 < e && e <= 7) {
-            return toChars1(h, m, l, e);
+            COUNTERS.increment(Path.PLAIN_CHARS);
+            return toChars1(buf, index, precision, h, m, l, e);
         }
         if (-3 < e && e <= 0) {
-            return toChars2(h, m, l, e);
+            COUNTERS.increment(Path.LEADING_ZEROES_CHARS);
+            return toChars2(buf, index, precision, h, m, l, e);
         }
-        return toChars3(h, m, l, e);
+        COUNTERS.increment(Path.EXPONENT_CHARS);
+        return toChars3(buf, index, precision, h, m, l, e);
     }
 
-    private String toChars1(int h, int m, int l, int e) {
+    private static int toChars1(byte[] buf, int index, int precision,
+            int h, int m, int l, int e) {
         /*
         0 < e <= 7: plain format without leading zeroes.
-        The left-to-right digits generation is inspired by [4].
+        The 8 digits of m are stored once as they are, and once more
+        shifted right by one position from the (e-1)-th digit on, where
+        the point then overwrites the duplicate digit.
+        The second store ends at most at the 6th digit of l, so it stays
+        within the room of the rendering.
          */
-        appendDigit(h);
-        int y = y(m);
-        int t;
-        int i = 1;
-        for (; i < e; ++i) {
-            t = 10 * y;
-            appendDigit(t >>> 28);
-            y = t & MASK_28;
-        }
-        append('.');
-        for (; i <= 8; ++i) {
-            t = 10 * y;
-            appendDigit(t >>> 28);
-            y = t & MASK_28;
-        }
-        lowDigits(l);
-        return charsToString();
+        int last = lastKept(precision, index + 1, e);
+        buf[++index] = (byte) ('0' + h);
+        long d = digits8(m);
+        setLong(buf, index + 1, d);
+        setLong(buf, index + e + 1, d >>> 8 * (e - 1));
+        buf[index + e] = '.';
+        return lowDigits(buf, index + 9, l, last);
     }
 
-    private String toChars2(int h, int m, int l, int e) {
+    private static int toChars2(byte[] buf, int index, int precision,
+            int h, int m, int l, int e) {
         // -3 < e <= 0: plain format with leading zeroes.
-        appendDigit(0);
-        append('.');
+        buf[++index] = '0';
+        buf[++index] = '.';
         for (; e < 0; ++e) {
-            appendDigit(0);
+            buf[++index] = '0';
         }
-        appendDigit(h);
-        append8Digits(m);
-        lowDigits(l);
-        return charsToString();
+        int last = lastKept(precision, index + 1, H);
+        buf[++index] = (byte) ('0' + h);
+        index = append8Digits(buf, index, m);
+        return lowDigits(buf, index, l, last);
     }
 
-    private String toChars3(int h, int m, int l, int e) {
+    private static int toChars3(byte[] buf, int index, int precision,
+            int h, int m, int l, int e) {
         // -3 >= e | e > 7: computerized scientific notation
-        appendDigit(h);
-        append('.');
-        append8Digits(m);
-        lowDigits(l);
-        exponent(e - 1);
-        return charsToString();
+        int last = lastKept(precision, index + 1, 1);
+        buf[++index] = (byte) ('0' + h);
+        buf[++index] = '.';
+        index = append8Digits(buf, index, m);
+        index = lowDigits(buf, index, l, last);
+        return exponent(buf, index, e - 1);
+    }
+
+    /*
+    The formats of ECMAScript's Number::toString(x), where the decimal is
+    0.f 10^e, as in toChars(), and the trailing zeroes of f are dropped.
+     */
+    private static int toEcmaChars(byte[] buf, int index,
+            int h, int m, int l, int e) {
+        if (0 < e && e <= 21) {
+            // Plain format, without the point for integers
+            return plainChars(buf, index, h, m, l, e);
+        }
+        if (-6 < e && e <= 0) {
+            // Plain format with leading zeroes
+            index = leadingZeroes(buf, index, e);
+            return appendSignificand(buf, index, h, m, l, 0);
+        }
+        // Exponent with an explicit sign
+        index = appendSignificand(buf, index, h, m, l, 1);
+        buf[++index] = 'e';
+        buf[++index] = (byte) (e > 0 ? '+' : '-');
+        return exponentDigits(buf, index, Math.abs(e - 1));
+    }
+
+    /*
+    The shortest of the JSON number texts for the decimal 0.f 10^e,
+    as in toChars(), where f has n digits once its trailing zeroes are
+    dropped: the plain format, a single digit before the point with the
+    exponent e - 1, or the integer f with the exponent e - n.
+     */
+    private static int toJsonChars(byte[] buf, int index,
+            int h, int m, int l, int e) {
+        int n = significandLength(m, l);
+        int plainLen = e >= n ? e : e > 0 ? n + 1 : n + 2 - e;
+        int integerLen = n + 1 + exponentLength(e - n);
+        int pointLen = n + (n > 1 ? 2 : 1) + exponentLength(e - 1);
+        if (plainLen <= integerLen && plainLen <= pointLen) {
+            if (e > 0) {
+                return plainChars(buf, index, h, m, l, e);
+            }
+            index = leadingZeroes(buf, index, e);
+            return appendSignificand(buf, index, h, m, l, 0);
+        }
+        if (pointLen <= integerLen) {
+            index = appendSignificand(buf, index, h, m, l, 1);
+            return jsonExponent(buf, index, e - 1);
+        }
+        index = appendSignificand(buf, index, h, m, l, 0);
+        return jsonExponent(buf, index, e - n);
     }
 
-    private void lowDigits(int l) {
-        if (l != 0) {
-            append8Digits(l);
+    // The number of digits of hml, without its trailing zeroes.
+    private static int significandLength(int m, int l) {
+        int n = H;
+        int d = l;
+        if (l == 0) {
+            if (m == 0) {
+                return 1;
+            }
+            n = H - 8;
+            d = m;
         }
-        removeTrailingZeroes();
+        for (int q = d / 10; d == 10 * q; q = d / 10) {
+            d = q;
+            n -= 1;
+        }
+        return n;
+    }
+
+    // The number of characters of the exponent x, in JSON or Java format.
+    private static int exponentLength(int x) {
+        int a = Math.abs(x);
+        return (x < 0 ? 1 : 0) + (a < 10 ? 1 : a < 100 ? 2 : 3);
     }
 
-    private void append8Digits(int m) {
-        // The left-to-right digits generation is inspired by [4]
+    private static int jsonExponent(byte[] buf, int index, int x) {
+        buf[++index] = 'e';
+        if (x < 0) {
+            buf[++index] = '-';
+            x = -x;
+        }
+        return exponentDigits(buf, index, x);
+    }
+
+    /*
+    The plain format of 0.f 10^e, for 0 < e: the first e digits of f,
+    followed by the point and the others, except when these are all
+    zeroes, which are then dropped.
+     */
+    private static int plainChars(byte[] buf, int index,
+            int h, int m, int l, int e) {
+        int start = index;
+        index = appendSignificand(buf, index, h, m, l, e);
+        for (int i = index - start; i < e; ++i) {
+            buf[++index] = '0';
+        }
+        return index;
+    }
+
+    // Appends 0. followed by -e zeroes, for e <= 0.
+    private static int leadingZeroes(byte[] buf, int index, int e) {
+        buf[++index] = '0';
+        buf[++index] = '.';
+        for (; e < 0; ++e) {
+            buf[++index] = '0';
+        }
+        return index;
+    }
+
+    /*
+    Appends the H digits hml, with the point after the first p of them
+    when 0 < p < H, then drops the trailing zeroes and a trailing point.
+     */
+    private static int appendSignificand(byte[] buf, int index,
+            int h, int m, int l, int p) {
+        buf[++index] = (byte) ('0' + h);
+        index = digitsWithPoint(buf, index, m, 1, p);
+        index = digitsWithPoint(buf, index, l, 9, p);
+        while (buf[index] == '0') {
+            --index;
+        }
+        if (buf[index] == '.') {
+            --index;
+        }
+        return index;
+    }
+
+    /*
+    Appends the 8 digits of m, preceded by the point when the number of
+    digits before them, from i on, reaches p.
+     */
+    private static int digitsWithPoint(byte[] buf, int index, int m, int i,
+            int p) {
         int y = y(m);
-        for (int i = 0; i < 8; ++i) {
+        for (int end = i + 8; i < end; ++i) {
+            if (i == p) {
+                buf[++index] = '.';
+            }
             int t = 10 * y;
-            appendDigit(t >>> 28);
+            buf[++index] = (byte) ('0' + (t >>> 28));
             y = t & MASK_28;
         }
+        return index;
     }
 
-    private void removeTrailingZeroes() {
-        while (buf[index] == '0') {
+    /*
+    Returns the index in buf of the last digit that must be kept even if
+    it is zero, when the first digit is at index first and the point
+    follows the n-th digit: -1 for the shortest rendering.
+     */
+    private static int lastKept(int precision, int first, int n) {
+        if (precision == 0) {
+            return -1;
+        }
+        return first + precision - (precision > n ? 0 : 1);
+    }
+
+    private static int lowDigits(byte[] buf, int index, int l, int last) {
+        if (l != 0 || index < last) {
+            index = append8Digits(buf, index, l);
+        }
+        return removeTrailingZeroes(buf, index, last);
+    }
+
+    private static int append8Digits(byte[] buf, int index, int m) {
+        setLong(buf, index + 1, digits8(m));
+        return index + 8;
+    }
+
+    private static int removeTrailingZeroes(byte[] buf, int index, int last) {
+        while (buf[index] == '0' && index > last) {
             --index;
         }
         if (buf[index] == '.') {
             ++index;
         }
+        return index;
     }
 
     /*
     Computes floor((m + 1) 2^28 / 10^8) - 1, needed by [4], as in [3]
      */
-    private int y(int m) {
+    private static int y(int m) {
         return (int) (multiplyHigh(
                 (long) (m + 1) << 28,
                 48_357_032_784_585_167L) >>> 18) - 1;
     }
 
-    private void exponent(int e) {
-        append('E');
+    private static int exponent(byte[] buf, int index, int e) {
+        buf[++index] = 'E';
         if (e < 0) {
-            append('-');
+            buf[++index] = '-';
             e = -e;
         }
+        return exponentDigits(buf, index, e);
+    }
+
+    private static int exponentDigits(byte[] buf, int index, int e) {
         if (e < 10) {
-            appendDigit(e);
-            return;
+            buf[++index] = (byte) ('0' + e);
+            return index;
         }
         /*
         It can be shown ([3]) that
             floor(e / 10) = floor(205 e / 2^11)
             floor(e / 100) = floor(1'311 e / 2^17)
          */
-        if (e < 100) {
-            int d = e * 205 >>> 11;
-            appendDigit(d);
-            appendDigit(e - 10 * d);
-            return;
+        if (e >= 100) {
+            int d = e * 1_311 >>> 17;
+            buf[++index] = (byte) ('0' + d);
+            e -= 100 * d;
         }
-        int d = e * 1_311 >>> 17;
-        appendDigit(d);
-        e -= 100 * d;
-        d = e * 205 >>> 11;
-        appendDigit(d);
-        appendDigit(e - 10 * d);
-    }
-
-    private void append(int c) {
-        buf[++index] = (byte) c;
-    }
-
-    private void appendDigit(int d) {
+        int d = e * 205 >>> 11;
         buf[++index] = (byte) ('0' + d);
+        buf[++index] = (byte) ('0' + e - 10 * d);
+        return index;
     }
 
-    private String charsToString() {
-        return new String(buf, 0, 0, index + 1);
+    private static String charsToString(byte[] buf, int index) {
+        return new String(buf, 0, index + 1, ISO_8859_1);
     }
 
 }
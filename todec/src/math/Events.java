@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+/*
+The entry points of the renderers into the JFR events of this package.
+
+The module only requires jdk.jfr statically, so that its users do not
+need it. As BulkToDecimalEvent and ToDecimalSampleEvent extend
+jdk.jfr.Event, they are only loaded once AVAILABLE confirms that the
+module reads jdk.jfr. Otherwise, no event is ever started.
+ */
+final class Events {
+
+    private static final boolean AVAILABLE = ModuleLayer.boot()
+            .findModule("jdk.jfr")
+            .map(Events.class.getModule()::canRead)
+            .orElse(false);
+
+    private Events() {
+    }
+
+    // As BulkToDecimalEvent.start(), or null when jdk.jfr is absent.
+    static BulkToDecimalEvent bulk(PathCounters counters, ByteBuilder dst) {
+        return AVAILABLE ? BulkToDecimalEvent.start(counters, dst) : null;
+    }
+
+    // As ToDecimalSampleEvent.start(), or null when jdk.jfr is absent.
+    static ToDecimalSampleEvent sample() {
+        return AVAILABLE ? ToDecimalSampleEvent.start() : null;
+    }
+
+}
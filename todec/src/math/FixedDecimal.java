@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.RoundingMode;
+
+import static java.lang.Double.doubleToRawLongBits;
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+import static math.MathUtils.*;
+
+/**
+ * The rendering of a {@code double} with a fixed number of fraction digits,
+ * in plain notation, as by
+ * {@link DoubleToDecimal#toFixedString(double, int, java.math.RoundingMode)}.
+ *
+ * <p>An instance first computes the rendering, then reports its length,
+ * so that it can be written into a destination with no further checks.
+ *
+ * @author Raffaello Giulietti
+ */
+final class FixedDecimal {
+
+    // The maximal number of fraction digits.
+    static final int MAX_FRACTION_DIGITS = 17;
+
+    // The precision in bits.
+    private static final int P = 53;
+
+    // Exponent width in bits.
+    private static final int W = (Double.SIZE - 1) - (P - 1);
+
+    // Minimum value of the exponent: -(2^(W-1)) - P + 3.
+    private static final int Q_MIN = (-1 << W - 1) - P + 3;
+
+    // Minimum value of the significand of a normal value: 2^(P-1).
+    private static final long C_MIN = 1L << P - 1;
+
+    // Mask to extract the biased exponent.
+    private static final int BQ_MASK = (1 << W) - 1;
+
+    // Mask to extract the fraction bits.
+    private static final long T_MASK = (1L << P - 1) - 1;
+
+    // The chunks of a large integer part have CHUNK_DIGITS digits.
+    private static final int CHUNK_DIGITS = 9;
+    private static final int CHUNK = 1_000_000_000;
+
+    private final int fractionDigits;
+
+    // Set only for the infinities and NaN.
+    private String special;
+
+    private boolean negative;
+
+    // The integer part, when it is less than 2^63.
+    private long integer;
+
+    /*
+    Otherwise, the integer part in base 10^9, the most significant chunk
+    in chunks[count - 1].
+     */
+    private int[] chunks;
+    private int count;
+
+    // The fraction, rounded to fractionDigits digits.
+    private long fraction;
+
+    private FixedDecimal(int fractionDigits) {
+        this.fractionDigits = fractionDigits;
+    }
+
+    /*
+    Checks the arguments of the public fixed renderings and returns the
+    rendering of v.
+     */
+    static FixedDecimal of(double v, int fractionDigits, RoundingMode mode) {
+        if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+            throw new IllegalArgumentException(
+                    "fractionDigits must be in [0, " + MAX_FRACTION_DIGITS
+                            + "]");
+        }
+        return of(v, fractionDigits, DecimalRounding.isHalfEven(mode));
+    }
+
+    /*
+    Returns the rendering of v with fractionDigits digits after the point,
+    with ties resolved as specified by halfEven.
+
+    Let |v| = c 2^q. The integer part i and the fraction of |v| are split
+    exactly. The fraction is rounded to fractionDigits digits by
+    DecimalRounding.round(), which is always exact for these powers of 10.
+    Without fraction digits, the ties depend on the integer part, so the
+    whole |v| < 2^53 is rounded instead.
+    When |v| >= 2^63, |v| is an integer whose digits are produced by long
+    division of c 2^q, in 32 bit limbs, by 10^9.
+     */
+    static FixedDecimal of(double v, int fractionDigits, boolean halfEven) {
+        FixedDecimal fd = new FixedDecimal(fractionDigits);
+        long bits = doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            fd.special = t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity";
+            return fd;
+        }
+        fd.negative = bits < 0;
+        int q = bq != 0 ? Q_MIN - 1 + bq : Q_MIN;
+        long c = bq != 0 ? C_MIN | t : t;
+        if (c == 0) {
+            return fd;
+        }
+        if (q >= 0) {
+            if (q + Long.SIZE - numberOfLeadingZeros(c) < Long.SIZE) {
+                fd.integer = c << q;
+            } else {
+                fd.toChunks(c, q);
+            }
+            return fd;
+        }
+        if (fractionDigits == 0) {
+            // The parity of the integer part decides the ties
+            fd.integer = DecimalRounding.round(c, q, 0, 0, halfEven);
+            return fd;
+        }
+        long fc = c;
+        if (-q < Long.SIZE) {
+            fd.integer = c >>> -q;
+            fc = c & (1L << -q) - 1;
+        }
+        if (fc != 0) {
+            fd.fraction = DecimalRounding.round(fc, q, -fractionDigits, 0,
+                    halfEven);
+            if (fd.fraction == pow10[fractionDigits]) {
+                // Carry into the integer part, which is less than 2^53
+                fd.integer += 1;
+                fd.fraction = 0;
+            }
+        }
+        return fd;
+    }
+
+    private void toChunks(long c, int q) {
+        // c 2^q in little endian 32 bit limbs
+        int[] limbs = new int[(q + P >>> 5) + 1];
+        int w = q >>> 5;
+        int sh = q & 0x1F;
+        long low = c << sh;
+        limbs[w] = (int) low;
+        limbs[w + 1] = (int) (low >>> 32);
+        if (sh > Long.SIZE - P) {
+            limbs[w + 2] = (int) (c >>> Long.SIZE - sh);
+        }
+        chunks = new int[(limbs.length * 32 + 28) / 29];
+        int top = limbs.length - 1;
+        while (top >= 0) {
+            long rem = 0;
+            for (int j = top; j >= 0; --j) {
+                rem = rem << 32 | limbs[j] & 0xFFFF_FFFFL;
+                limbs[j] = (int) (rem / CHUNK);
+                rem %= CHUNK;
+            }
+            chunks[count++] = (int) rem;
+            while (top >= 0 && limbs[top] == 0) {
+                --top;
+            }
+        }
+    }
+
+    /*
+    The number of characters of the rendering.
+     */
+    int length() {
+        if (special != null) {
+            return special.length();
+        }
+        int len = negative ? 1 : 0;
+        len += chunks != null
+                ? CHUNK_DIGITS * (count - 1) + decimalLength(chunks[count - 1])
+                : decimalLength(integer);
+        return fractionDigits > 0 ? len + 1 + fractionDigits : len;
+    }
+
+    /*
+    Writes the rendering into dst from index off, where there is room for
+    length() characters, and returns length().
+     */
+    int writeTo(byte[] dst, int off) {
+        int len = length();
+        if (special != null) {
+            for (int i = 0; i < len; ++i) {
+                dst[off + i] = (byte) special.charAt(i);
+            }
+            return len;
+        }
+        int end = off + len;
+        if (fractionDigits > 0) {
+            digits(dst, end, fraction, fractionDigits);
+            end -= fractionDigits + 1;
+            dst[end] = '.';
+        }
+        if (chunks != null) {
+            for (int i = 0; i < count - 1; ++i) {
+                digits(dst, end, chunks[i], CHUNK_DIGITS);
+                end -= CHUNK_DIGITS;
+            }
+            digits(dst, end, chunks[count - 1], end - off);
+        } else {
+            digits(dst, end, integer, end - off - (negative ? 1 : 0));
+        }
+        if (negative) {
+            dst[off] = '-';
+        }
+        return len;
+    }
+
+    String toFixedString() {
+        byte[] b = new byte[length()];
+        writeTo(b, 0);
+        return new String(b, ISO_8859_1);
+    }
+
+    int toBytes(byte[] dst, int off) {
+        checkFromIndexSize(off, length(), dst.length);
+        return writeTo(dst, off);
+    }
+
+    StringBuilder appendTo(StringBuilder sb) {
+        byte[] b = new byte[length()];
+        writeTo(b, 0);
+        sb.ensureCapacity(sb.length() + b.length);
+        for (byte c : b) {
+            sb.append((char) c);
+        }
+        return sb;
+    }
+
+    // Writes the n least significant digits of x >= 0 before index end.
+    private static void digits(byte[] dst, int end, long x, int n) {
+        for (int i = 1; i <= n; ++i) {
+            long d = x / 10;
+            dst[end - i] = (byte) ('0' + (x - 10 * d));
+            x = d;
+        }
+    }
+
+    // The number of digits of x >= 0, at least 1.
+    private static int decimalLength(long x) {
+        int len = flog10pow2(Long.SIZE - numberOfLeadingZeros(x));
+        long p = len < pow10.length ? pow10[len] : 10 * pow10[len - 1];
+        return x >= p ? len + 1 : Math.max(len, 1);
+    }
+
+}
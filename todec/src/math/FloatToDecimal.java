@@ -21,13 +21,23 @@
 
 package math;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+import math.PathCounters.Path;
+
 import static java.lang.Float.*;
 import static java.lang.Integer.numberOfLeadingZeros;
 import static java.lang.Math.multiplyHigh;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
 import static math.MathUtils.*;
 
 /**
- * This class exposes a method to render a {@code float} as a string.
+ * This class exposes methods to render a {@code float} as a string
+ * or as a sequence of ASCII bytes.
  *
  * @author Raffaello Giulietti
  */
@@ -41,8 +51,6 @@ final public class FloatToDecimal {
     [2] IEEE Computer Society, "IEEE Standard for Floating-Point Arithmetic"
 
     [3] Moeller & Granlund, "Improved division by invariant integers"
-
-    [4] Bouvier & Zimmermann, "Division-Free Binary-to-Decimal Conversion"
      */
 
     // The precision in bits.
@@ -72,25 +80,44 @@ final public class FloatToDecimal {
     // Used in rop().
     private static final long MASK_31 = (1L << 31) - 1;
 
-    // Used for digit extraction in toChars() and its dependencies.
-    private static final int MASK_28 = (1 << 28) - 1;
+    /**
+     * The maximal number of characters in the rendering of a {@code float}.
+     */
+    public static final int MAX_CHARS = H + 6;
 
-    // For thread-safety, each thread gets its own instance of this class.
-    private static final ThreadLocal<FloatToDecimal> threadLocal =
-            ThreadLocal.withInitial(FloatToDecimal::new);
+    /**
+     * The maximal number of characters in the fixed rendering of a
+     * {@code float}, as by {@link #toFixedString(float, int, RoundingMode)}:
+     * a sign, 39 integer digits, the point and 17 fraction digits.
+     */
+    public static final int MAX_FIXED_CHARS = 58;
+
+    // Returned by toDecimal(), complemented, to classify its argument.
+    private static final int NON_SPECIAL = 0;
+    private static final int PLUS_ZERO = 1;
+    private static final int MINUS_ZERO = 2;
+    private static final int PLUS_INF = 3;
+    private static final int MINUS_INF = 4;
+    private static final int NAN = 5;
+
+    // Counts the paths taken, when PathCounters.ENABLED.
+    private static final PathCounters COUNTERS = PathCounters.forFloat();
 
     /*
-    Room for the longer of the forms
+    The renderers keep no state besides their arguments and locals.
+    The characters are written to an array, passed along with the index
+    of its rightmost valid character to the methods that write, which
+    return the updated index. The array has room for the longer of the
+    forms
         -ddddd.dddd         H + 2 characters
         -0.00ddddddddd      H + 5 characters
         -d.ddddddddE-ee     H + 6 characters
-    where there are H digits d
+    where there are H digits d.
+    The byte[] and ByteBuffer sinks and the bulk methods render directly
+    into the array of the destination whenever it has room, and thus do
+    not allocate. Only the String and StringBuilder sinks, and the
+    destinations with less room, need a new array.
      */
-    private final byte[] buf = new byte[H + 6];
-
-    // Index into buf of rightmost valid character.
-    private int index;
-
     private FloatToDecimal() {
     }
 
@@ -208,14 +235,537 @@ final public class FloatToDecimal {
      * @return a string rendering of the argument.
      */
     public static String toString(float v) {
-        return threadLocalInstance().toDecimal(v);
+        ToDecimalSampleEvent event = Events.sample();
+        String s = toDecimalString(v);
+        if (event != null) {
+            event.finish("float", v, s.length());
+        }
+        return s;
+    }
+
+    /**
+     * Writes the rendering of the {@code float} argument into the array
+     * {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of {@link #toString(float)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * @param v the {@code float} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toBytes(float v, byte[] dst, int off) {
+        ToDecimalSampleEvent event = Events.sample();
+        int len = toDecimalBytes(v, dst, off);
+        if (event != null) {
+            event.finish("float", v, len);
+        }
+        return len;
+    }
+
+    /**
+     * Writes the rendering of the {@code float} argument into the buffer
+     * {@code dst}, starting at its current position,
+     * and then advances the position.
+     *
+     * <p>The bytes written are exactly those of {@link #toBytes(float,
+     * byte[], int)}. The buffer can be a heap or a direct buffer.
+     * When fewer bytes than needed remain in {@code dst}, an exception is
+     * thrown and neither the content nor the position of {@code dst}
+     * are changed. A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * @param v the {@code float} to be rendered.
+     * @param dst the destination buffer.
+     * @return the number of bytes written.
+     * @throws BufferOverflowException if fewer than the needed bytes
+     * remain in {@code dst}.
+     * @throws java.nio.ReadOnlyBufferException if {@code dst} is read-only.
+     */
+    public static int toBytes(float v, ByteBuffer dst) {
+        ToDecimalSampleEvent event = Events.sample();
+        int len = toDecimalBytes(v, dst);
+        if (event != null) {
+            event.finish("float", v, len);
+        }
+        return len;
+    }
+
+    /**
+     * Renders {@code len} elements of {@code a}, starting at index
+     * {@code off}, and appends the renderings to {@code dst},
+     * separated by {@code sep}.
+     *
+     * <p>Each element is rendered as by {@link #toBytes(float, byte[], int)}.
+     * Nothing is appended before the first or after the last rendering.
+     * The characters of {@code sep} are appended as ISO-8859-1 bytes.
+     *
+     * <p>The per-call overhead of this method is incurred once for the
+     * whole slice, and the renderings are written directly into
+     * {@code dst}, rather than once per element.
+     *
+     * @param a the array of {@code float}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(float[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        checkFromIndexSize(off, len, a.length);
+        BulkToDecimalEvent event = Events.bulk(COUNTERS, dst);
+        toDecimalBytes(a, off, len, sep.getBytes(ISO_8859_1), dst);
+        if (event != null) {
+            event.finish("float", "java", len, dst);
+        }
+        return dst;
+    }
+
+    /**
+     * Appends the rendering of the {@code float} argument to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(float)}, but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code float} to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, float v) {
+        return appendDecimal(sb, v);
+    }
+
+    /**
+     * Appends the rendering of the {@code float} argument to {@code a}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(float)}, but no intermediate {@link String} is created.
+     *
+     * @param a the {@link Appendable} to append to.
+     * @param v the {@code float} to be rendered.
+     * @return {@code a}.
+     * @throws IOException if {@code a} throws it.
+     */
+    public static Appendable appendTo(Appendable a, float v)
+            throws IOException {
+        if (a instanceof StringBuilder) {
+            return appendTo((StringBuilder) a, v);
+        }
+        return appendDecimal(a, v);
+    }
+
+    /**
+     * Sets {@code dec} to the decimal selected to represent the
+     * {@code float} argument, without formatting it.
+     *
+     * <p>For a finite non-zero {@code v}, this is the decimal
+     * <i>d</i><sub><code>v</code></sub> described in
+     * {@link #toString(float)}, with the sign of {@code v}.
+     * For the zeroes, {@code dec} is set to a zero with the sign of
+     * {@code v}. For the infinities and NaN, {@code dec} is left unchanged.
+     *
+     * @param v the {@code float} to be split.
+     * @param dec the holder for the selected decimal.
+     * @return whether {@code v} is finite, that is, whether {@code dec}
+     * has been set.
+     */
+    public static boolean split(float v, Decimal dec) {
+        return splitDecimal(v, dec);
+    }
+
+    /**
+     * Returns the number of characters of the rendering of the
+     * {@code float} argument, without rendering it.
+     *
+     * <p>This is the length of {@link #toString(float)}, and hence the
+     * number of bytes written by {@link #toBytes(float, byte[], int)}.
+     * It is determined from the number of digits of the selected decimal
+     * and from the format chosen for it.
+     *
+     * @param v the {@code float} whose rendering is measured.
+     * @return the number of characters of the rendering of {@code v}.
+     */
+    public static int length(float v) {
+        return decimalLength(v, new Decimal());
+    }
+
+    /**
+     * Returns the sum of the lengths, as by {@link #length(float)}, of
+     * {@code len} elements of {@code a}, starting at index {@code off}.
+     *
+     * <p>The separators are not included: the bytes appended by
+     * {@link #toBytes(float[], int, int, String, ByteBuilder)} amount to
+     * this sum plus {@code len - 1} times the length of the separator,
+     * when {@code len > 0}.
+     *
+     * @param a the array of {@code float}s whose renderings are measured.
+     * @param off the index in {@code a} of the first element to measure.
+     * @param len the number of elements to measure.
+     * @return the sum of the lengths of the renderings.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static long length(float[] a, int off, int len) {
+        checkFromIndexSize(off, len, a.length);
+        Decimal dec = new Decimal();
+        long sum = 0;
+        for (int i = off, end = off + len; i < end; ++i) {
+            sum += decimalLength(a[i], dec);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a string rendering of the {@code float} argument,
+     * correctly rounded to {@code precision} significant digits.
+     * This is a fast replacement for {@code String.format("%.Ng", v)}.
+     *
+     * <p>This is the analogue of
+     * {@link DoubleToDecimal#toString(double, int, RoundingMode)}.
+     * As the decimals are formatted as described in
+     * {@link #toString(float)}, the precision is limited to 9 digits,
+     * which suffice for all {@code float}s to round trip.
+     * More digits of the exact value can be rendered by widening
+     * {@code v} to a {@code double}, which is exact.
+     *
+     * @param v the {@code float} to be rendered.
+     * @param precision the number of significant digits,
+     * from 1 to 9.
+     * @param mode the rounding mode, either {@link RoundingMode#HALF_EVEN}
+     * or {@link RoundingMode#HALF_UP}.
+     * @return a string rendering of the argument.
+     * @throws IllegalArgumentException if {@code precision} or
+     * {@code mode} are not supported.
+     */
+    public static String toString(float v, int precision, RoundingMode mode) {
+        return toPrecisionString(v, checkPrecision(precision),
+                DecimalRounding.isHalfEven(mode));
+    }
+
+    /**
+     * Appends the rendering of the {@code float} argument, correctly
+     * rounded to {@code precision} significant digits, to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(float, int, RoundingMode)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code float} to be rendered.
+     * @param precision the number of significant digits,
+     * from 1 to 9.
+     * @param mode the rounding mode.
+     * @return {@code sb}.
+     * @throws IllegalArgumentException if {@code precision} or
+     * {@code mode} are not supported.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, float v,
+            int precision, RoundingMode mode) {
+        return appendPrecision(sb, v, checkPrecision(precision),
+                DecimalRounding.isHalfEven(mode));
     }
 
-    private static FloatToDecimal threadLocalInstance() {
-        return threadLocal.get();
+    /**
+     * Returns a string rendering of the {@code float} argument in plain
+     * notation, correctly rounded to {@code fractionDigits} digits after
+     * the point.
+     * This is a fast replacement for {@code String.format("%.Nf", v)}.
+     *
+     * <p>The rendering is the one of
+     * {@link DoubleToDecimal#toFixedString(double, int, RoundingMode)}
+     * for {@code v} widened to a {@code double}, which is exact.
+     *
+     * @param v the {@code float} to be rendered.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode, either {@link RoundingMode#HALF_EVEN}
+     * or {@link RoundingMode#HALF_UP}.
+     * @return a string rendering of the argument.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     */
+    public static String toFixedString(float v, int fractionDigits,
+            RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).toFixedString();
     }
 
-    private String toDecimal(float v) {
+    /**
+     * Writes the rendering of the {@code float} argument, correctly
+     * rounded to {@code fractionDigits} digits after the point, into
+     * the array {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of
+     * {@link #toFixedString(float, int, RoundingMode)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_FIXED_CHARS} bytes always suffices.
+     *
+     * @param v the {@code float} to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toFixedBytes(float v, byte[] dst, int off,
+            int fractionDigits, RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).toBytes(dst, off);
+    }
+
+    /**
+     * Appends the rendering of the {@code float} argument, correctly
+     * rounded to {@code fractionDigits} digits after the point,
+     * to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toFixedString(float, int, RoundingMode)},
+     * but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the {@code float} to be rendered.
+     * @param fractionDigits the number of digits after the point,
+     * from 0 to 17.
+     * @param mode the rounding mode.
+     * @return {@code sb}.
+     * @throws IllegalArgumentException if {@code fractionDigits} or
+     * {@code mode} are not supported.
+     */
+    public static StringBuilder appendFixedTo(StringBuilder sb, float v,
+            int fractionDigits, RoundingMode mode) {
+        return FixedDecimal.of(v, fractionDigits, mode).appendTo(sb);
+    }
+
+    private static int checkPrecision(int precision) {
+        if (precision < 1 || precision > H) {
+            throw new IllegalArgumentException(
+                    "precision must be in [1, " + H + "]");
+        }
+        return precision;
+    }
+
+    private static String toDecimalString(float v) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toDecimal(buf, -1, v, null);
+        return index >= 0 ? charsToString(buf, index) : special(~index);
+    }
+
+    private static String toPrecisionString(float v, int precision,
+            boolean halfEven) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toPrecision(buf, -1, v, precision, halfEven);
+        return index >= 0 ? charsToString(buf, index) : special(~index);
+    }
+
+    private static StringBuilder appendPrecision(StringBuilder sb, float v,
+            int precision, boolean halfEven) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toPrecision(buf, -1, v, precision, halfEven);
+        return index >= 0
+                ? appendChars(sb, buf, index)
+                : sb.append(special(~index));
+    }
+
+    private static String special(int type) {
+        switch (type) {
+            case PLUS_ZERO: return "0.0";
+            case MINUS_ZERO: return "-0.0";
+            case PLUS_INF: return "Infinity";
+            case MINUS_INF: return "-Infinity";
+            default: return "NaN";
+        }
+    }
+
+    private static boolean splitDecimal(float v, Decimal dec) {
+        // Splitting writes no characters
+        int type = ~toDecimal(null, -1, v, dec);
+        if (type == PLUS_ZERO || type == MINUS_ZERO) {
+            dec.setZero();
+        } else if (type != NON_SPECIAL) {
+            return false;
+        }
+        dec.setNegative(floatToRawIntBits(v) < 0);
+        return true;
+    }
+
+    /*
+    Returns the length of the rendering of v, as formatted by toChars().
+    Let d 10^i be the decimal selected in dec, where d has n digits and
+    no trailing zeroes, so that the decimal is 0.d 10^e, with e = n + i.
+    Then the formats are
+        0 < e <= 7      d.ddd, with at least 1 fraction digit
+        -3 < e <= 0     0.00ddd, with -e leading zeroes
+        otherwise       d.ddE-x, with at least 2 digits
+     */
+    private static int decimalLength(float v, Decimal dec) {
+        // Measuring writes no characters
+        int type = ~toDecimal(null, -1, v, dec);
+        if (type != NON_SPECIAL) {
+            return special(type).length();
+        }
+        int d = (int) dec.significand();
+        int n = flog10pow2(Integer.SIZE - numberOfLeadingZeros(d));
+        if (d >= pow10[n]) {
+            n += 1;
+        }
+        int e = n + dec.exponent();
+        int len = floatToRawIntBits(v) >>> 31;
+        if (0 < e && e <= 7) {
+            return len + e + 1 + Math.max(n - e, 1);
+        }
+        if (-3 < e && e <= 0) {
+            return len + 2 - e + n;
+        }
+        return len + Math.max(n, 2) + 2 + exponentLength(e - 1);
+    }
+
+    // The number of characters of the exponent x.
+    private static int exponentLength(int x) {
+        int a = Math.abs(x);
+        return (x < 0 ? 1 : 0) + (a < 10 ? 1 : 2);
+    }
+
+    /*
+    As in DoubleToDecimal, renders v directly into dst when it has room for
+    the longest rendering, which is saved beforehand, as 2 overlapping
+    longs, so that the bytes past the rendering can be restored afterwards.
+    Otherwise, renders into a new array, to be copied to dst only when it
+    fits, so that dst is left unchanged when the rendering does not fit.
+     */
+    private static int toDecimalBytes(float v, byte[] dst, int off) {
+        if (off >= 0 && dst.length - off >= MAX_CHARS) {
+            int last = off + MAX_CHARS - 8;
+            long s0 = getLong(dst, off);
+            long s1 = getLong(dst, last);
+            int len = toDecimalChars(dst, off - 1, v) - off + 1;
+            restore(dst, off, len, s0);
+            restore(dst, last, len - (MAX_CHARS - 8), s1);
+            return len;
+        }
+        byte[] buf = new byte[MAX_CHARS];
+        int len = toDecimalChars(buf, -1, v) + 1;
+        checkFromIndexSize(off, len, dst.length);
+        System.arraycopy(buf, 0, dst, off, len);
+        return len;
+    }
+
+    // As toDecimalBytes(float, byte[], int),
+    // directly in heap buffers with enough room, otherwise by way of the
+    // scratch array of the thread.
+    private static int toDecimalBytes(float v, ByteBuffer dst) {
+        int p = dst.position();
+        if (dst.hasArray() && dst.remaining() >= MAX_CHARS) {
+            int len = toDecimalBytes(v, dst.array(), dst.arrayOffset() + p);
+            dst.position(p + len);
+            return len;
+        }
+        byte[] buf = scratch();
+        int len = toDecimalChars(buf, -1, v) + 1;
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        dst.put(buf, 0, len);
+        return len;
+    }
+
+    private static StringBuilder appendDecimal(StringBuilder sb, float v) {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toDecimal(buf, -1, v, null);
+        if (index < 0) {
+            return sb.append(special(~index));
+        }
+        return appendChars(sb, buf, index);
+    }
+
+    private static StringBuilder appendChars(StringBuilder sb, byte[] buf,
+            int index) {
+        sb.ensureCapacity(sb.length() + index + 1);
+        for (int i = 0; i <= index; ++i) {
+            sb.append((char) buf[i]);
+        }
+        return sb;
+    }
+
+    private static Appendable appendDecimal(Appendable a, float v)
+            throws IOException {
+        byte[] buf = new byte[MAX_CHARS];
+        int index = toDecimal(buf, -1, v, null);
+        if (index < 0) {
+            return a.append(special(~index));
+        }
+        for (int i = 0; i <= index; ++i) {
+            a.append((char) buf[i]);
+        }
+        return a;
+    }
+
+    private static ByteBuilder toDecimalBytes(float[] a, int off, int len,
+            byte[] sep, ByteBuilder dst) {
+        /*
+        Render directly into the array of dst, growing it only when the
+        room left might not suffice for one more separator and rendering.
+         */
+        int room = sep.length + MAX_CHARS;
+        byte[] buf = dst.bytes;
+        int index = dst.count - 1;
+        for (int i = off, end = off + len; i < end; ++i) {
+            if (index + room >= buf.length) {
+                dst.count = index + 1;
+                dst.ensureCapacity(dst.count + room);
+                buf = dst.bytes;
+            }
+            if (i != off) {
+                for (byte b : sep) {
+                    buf[++index] = b;
+                }
+            }
+            index = toDecimalChars(buf, index, a[i]);
+        }
+        dst.count = index + 1;
+        return dst;
+    }
+
+    /*
+    Renders v into buf after index, including the special values,
+    and returns the index of the last character.
+     */
+    static int toDecimalChars(byte[] buf, int index, float v) {
+        int last = toDecimal(buf, index, v, null);
+        if (last >= 0) {
+            return last;
+        }
+        String s = special(~last);
+        for (int i = 0; i < s.length(); ++i) {
+            buf[++index] = (byte) s.charAt(i);
+        }
+        return index;
+    }
+
+    /*
+    Renders v into buf after index and returns the index of the last
+    character when v is finite and non-zero, or sets dec to the selected
+    decimal and returns ~NON_SPECIAL when dec != null.
+    Otherwise, returns the complement ~type of the type of v and leaves
+    buf and dec unspecified.
+    Thus, the result is non-negative iff a rendering is left in buf.
+     */
+    private static int toDecimal(byte[] buf, int index, float v,
+            Decimal dec) {
         /*
         For details not discussed here see reference [2].
 
@@ -232,27 +782,42 @@ final public class FloatToDecimal {
         int t = bits & T_MASK;
         int bq = (bits >>> P - 1) & BQ_MASK;
         if (bq < BQ_MASK) {
-            index = -1;
-            if (bits < 0) {
-                append('-');
+            if (bits < 0 & dec == null) {
+                buf[++index] = '-';
             }
             if (bq != 0) {
                 // normal value
-                return toDecimal(Q_MIN - 1 + bq, C_MIN | t);
+                return toDecimal(buf, index, C_MIN, Q_MIN,
+                        Q_MIN - 1 + bq, C_MIN | t, dec);
             }
             if (t != 0) {
                 // subnormal value
-                return toDecimal(Q_MIN, t);
+                return toDecimal(buf, index, C_MIN, Q_MIN, Q_MIN, t, dec);
             }
-            return bits == 0 ? "0.0" : "-0.0";
+            return ~(bits == 0 ? PLUS_ZERO : MINUS_ZERO);
         }
         if (t != 0) {
-            return "NaN";
+            return ~NAN;
         }
-        return bits > 0 ? "Infinity" : "-Infinity";
+        return ~(bits > 0 ? PLUS_INF : MINUS_INF);
     }
 
-    private String toDecimal(int q, int c) {
+    /*
+    Renders c 2^q, a finite non-zero value of a binary format with a
+    precision of p <= P bits and a minimum exponent qMin, as toDecimal()
+    renders a float. Only the normal and subnormal ranges of c differ,
+    through C_MIN and Q_MIN, as the scaling does not depend on p, provided
+    the exponent range lies within the one of float.
+    Used by BFloat16ToDecimal and HalfToDecimal, which render the values
+    with s < 10 themselves, as the special cases below hold for float only.
+     */
+    static int toDecimal(byte[] buf, int index, int p, int qMin,
+            int q, int c) {
+        return toDecimal(buf, index, 1 << p - 1, qMin, q, c, null);
+    }
+
+    private static int toDecimal(byte[] buf, int index, int cMin, int qMin,
+            int q, int c, Decimal dec) {
         // For full details see reference [1].
         int out = c & 0x1;
         long cb;
@@ -260,14 +825,16 @@ final public class FloatToDecimal {
         long cbl;
         int k;
         int h;
-        if (c != C_MIN | q == Q_MIN) {
+        if (c != cMin | q == qMin) {
             // regular spacing
+            COUNTERS.increment(Path.REGULAR_SPACING);
             cb = c << 1;
             cbr = cb + 1;
             k = flog10pow2(q);
             h = q + flog2pow10(-k) + 34;
         } else {
             // irregular spacing
+            COUNTERS.increment(Path.IRREGULAR_SPACING);
             cb = c << 2;
             cbr = cb + 2;
             k = flog10threeQuartersPow2(q);
@@ -291,17 +858,18 @@ final public class FloatToDecimal {
             boolean upin = vbl + out <= sp10 << 2;
             boolean wpin = (tp10 << 2) + out <= vbr;
             if (upin != wpin) {
-                return toChars(upin ? sp10 : tp10, k);
+                COUNTERS.increment(Path.SHORTER_DECIMAL);
+                return toChars(buf, index, upin ? sp10 : tp10, k, dec);
             }
         } else if (s < 10) {
             switch (s) {
-                case 1: return toChars(14, -46); // 1.4 * 10^-45
-                case 2: return toChars(28, -46); // 2.8 * 10^-45
-                case 4: return toChars(42, -46); // 4.2 * 10^-45
-                case 5: return toChars(56, -46); // 5.6 * 10^-45
-                case 7: return toChars(70, -46); // 7.0 * 10^-45
-                case 8: return toChars(84, -46); // 8.4 * 10^-45
-                case 9: return toChars(98, -46); // 9.8 * 10^-45
+                case 1: return subnormalChars(buf, index, 14, dec); // 1.4
+                case 2: return subnormalChars(buf, index, 28, dec); // 2.8
+                case 4: return subnormalChars(buf, index, 42, dec); // 4.2
+                case 5: return subnormalChars(buf, index, 56, dec); // 5.6
+                case 7: return subnormalChars(buf, index, 70, dec); // 7.0
+                case 8: return subnormalChars(buf, index, 84, dec); // 8.4
+                case 9: return subnormalChars(buf, index, 98, dec); // 9.8
             }
         }
         int t = s + 1;
@@ -309,11 +877,71 @@ final public class FloatToDecimal {
         boolean win = (t << 2) + out <= vbr;
         if (uin != win) {
             // Exactly one of s 10^k or t 10^k lies in Rv.
-            return toChars(uin ? s : t, k);
+            return toChars(buf, index, uin ? s : t, k, dec);
         }
         // Both s 10^k and t 10^k lie in Rv: determine the one closest to v.
+        COUNTERS.increment(Path.BOTH_IN_RV);
         int cmp = vb - (s + t << 1);
-        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k);
+        return toChars(buf, index,
+                cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k, dec);
+    }
+
+    /*
+    Formats the decimal f 10^(-46) of one of the smallest subnormals,
+    which is f / 10 times 10^(-45), as in the comments of the callers.
+     */
+    private static int subnormalChars(byte[] buf, int index, int f,
+            Decimal dec) {
+        COUNTERS.increment(Path.SUBNORMAL_CASE);
+        return toChars(buf, index, f, -46, dec);
+    }
+
+    /*
+    Renders v, correctly rounded to precision significant digits, into buf
+    after index and returns the index of the last character when v is
+    finite. Otherwise, returns ~type, as toDecimal(), and leaves buf
+    unspecified.
+     */
+    private static int toPrecision(byte[] buf, int index, float v,
+            int precision, boolean halfEven) {
+        int bits = floatToRawIntBits(v);
+        int t = bits & T_MASK;
+        int bq = (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            return ~(t != 0 ? NAN : bits > 0 ? PLUS_INF : MINUS_INF);
+        }
+        if (bits < 0) {
+            buf[++index] = '-';
+        }
+        if (bq == 0 && t == 0) {
+            buf[++index] = '0';
+            buf[++index] = '.';
+            for (int i = 1; i < Math.max(precision, 2); ++i) {
+                buf[++index] = '0';
+            }
+            return index;
+        }
+        int q = bq != 0 ? Q_MIN - 1 + bq : Q_MIN;
+        int c = bq != 0 ? C_MIN | t : t;
+
+        // See DoubleToDecimal.toPrecision()
+        int k = flog10pow2(q + Integer.SIZE - numberOfLeadingZeros(c))
+                - precision + 1;
+        long min = pow10[precision - 1];
+        long f = DecimalRounding.round(c, q, k, min, halfEven);
+        if (f == DecimalRounding.LOW) {
+            k -= 1;
+            f = DecimalRounding.round(c, q, k, min, halfEven);
+        }
+        if (f == DecimalRounding.UNDECIDED) {
+            f = DecimalRounding.roundExactly(v, k, halfEven);
+        }
+        if (f == pow10[precision]) {
+            // Rounded up to one more digit
+            f = min;
+            k += 1;
+        }
+        return toChars(buf, index, precision, (int) f, k);
     }
 
     private static int rop(long g, long cp) {
@@ -324,9 +952,25 @@ final public class FloatToDecimal {
     }
 
     /*
-    Formats the decimal f 10^e.
+    Formats the shortest decimal f 10^e, or sets dec to it when dec != null,
+    and returns as toDecimal().
+     */
+    private static int toChars(byte[] buf, int index, int f, int e,
+            Decimal dec) {
+        if (dec != null) {
+            dec.set(f, e);
+            return ~NON_SPECIAL;
+        }
+        return toChars(buf, index, 0, f, e);
+    }
+
+    /*
+    Formats the decimal f 10^e into buf after index, with precision
+    significant digits, or 0 for the shortest rendering, and returns the
+    index of the last character.
      */
-    private String toChars(int f, int e) {
+    static int toChars(byte[] buf, int index, int precision,
+            int f, int e) {
         /*
         For details not discussed here see reference [3].
 
@@ -348,9 +992,9 @@ final public class FloatToDecimal {
         e += len;
 
         /*
-        The toChars?() methods perform left-to-right digits extraction
-        using ints, provided that the arguments are limited to 8 digits.
-        Therefore, split the H = 9 digits of f into:
+        The toChars?() methods extract the digits of ints of at most
+        8 digits at once, by MathUtils.digits8(). Therefore, split the
+        H = 9 digits of f into:
             h = the most significant digit of f
             l = the last 8, least significant digits of f
 
@@ -361,118 +1005,112 @@ final public class FloatToDecimal {
         int l = f - 100_000_000 * h;
 
         if (0 < e && e <= 7) {
-            return toChars1(h, l, e);
+            COUNTERS.increment(Path.PLAIN_CHARS);
+            return toChars1(buf, index, precision, h, l, e);
         }
         if (-3 < e && e <= 0) {
-            return toChars2(h, l, e);
+            COUNTERS.increment(Path.LEADING_ZEROES_CHARS);
+            return toChars2(buf, index, precision, h, l, e);
         }
-        return toChars3(h, l, e);
+        COUNTERS.increment(Path.EXPONENT_CHARS);
+        return toChars3(buf, index, precision, h, l, e);
     }
 
-    private String toChars1(int h, int l, int e) {
+    private static int toChars1(byte[] buf, int index, int precision,
+            int h, int l, int e) {
         /*
         0 < e <= 7: plain format without leading zeroes.
-        The left-to-right digits generation is inspired by [4].
+        The 8 digits of l, as by digits8(), are combined in one long with
+        a copy shifted left by one position, so that the point can be put
+        after the (e-1)-th of them. The last digit, shifted out of the
+        long, is stored on its own: unlike in DoubleToDecimal, nothing
+        follows it, so no byte past the rendering is written.
          */
-        appendDigit(h);
-        int y = y(l);
-        int t;
-        int i = 1;
-        for (; i < e; ++i) {
-            t = 10 * y;
-            appendDigit(t >>> 28);
-            y = t & MASK_28;
-        }
-        append('.');
-        for (; i <= 8; ++i) {
-            t = 10 * y;
-            appendDigit(t >>> 28);
-            y = t & MASK_28;
-        }
-        removeTrailingZeroes();
-        return charsToString();
-    }
-
-    private String toChars2(int h, int l, int e) {
+        int last = lastKept(precision, index + 1, e);
+        buf[++index] = (byte) ('0' + h);
+        long d = digits8(l);
+        long x = d & (1L << 8 * (e - 1)) - 1
+                | (long) '.' << 8 * (e - 1)
+                | d << 8 & -1L << 8 * e;
+        setLong(buf, index + 1, x);
+        buf[index + 9] = (byte) (d >>> 56);
+        return removeTrailingZeroes(buf, index + 9, last);
+    }
+
+    private static int toChars2(byte[] buf, int index, int precision,
+            int h, int l, int e) {
         // -3 < e <= 0: plain format with leading zeroes.
-        appendDigit(0);
-        append('.');
+        buf[++index] = '0';
+        buf[++index] = '.';
         for (; e < 0; ++e) {
-          appendDigit(0);
+            buf[++index] = '0';
         }
-        appendDigit(h);
-        append8Digits(l);
-        removeTrailingZeroes();
-        return charsToString();
+        int last = lastKept(precision, index + 1, H);
+        buf[++index] = (byte) ('0' + h);
+        index = append8Digits(buf, index, l);
+        return removeTrailingZeroes(buf, index, last);
     }
 
-    private String toChars3(int h, int l, int e) {
+    private static int toChars3(byte[] buf, int index, int precision,
+            int h, int l, int e) {
         // -3 >= e | e > 7: computerized scientific notation
-        appendDigit(h);
-        append('.');
-        append8Digits(l);
-        removeTrailingZeroes();
-        exponent(e - 1);
-        return charsToString();
+        int last = lastKept(precision, index + 1, 1);
+        buf[++index] = (byte) ('0' + h);
+        buf[++index] = '.';
+        index = append8Digits(buf, index, l);
+        index = removeTrailingZeroes(buf, index, last);
+        return exponent(buf, index, e - 1);
     }
 
-    private void append8Digits(int m) {
-        // The left-to-right digits generation is inspired by [4]
-        int y = y(m);
-        for (int i = 0; i < 8; ++i) {
-            int t = 10 * y;
-            appendDigit(t >>> 28);
-            y = t & MASK_28;
+    private static int append8Digits(byte[] buf, int index, int m) {
+        setLong(buf, index + 1, digits8(m));
+        return index + 8;
+    }
+
+    /*
+    Returns the index in buf of the last digit that must be kept even if
+    it is zero, when the first digit is at index first and the point
+    follows the n-th digit: -1 for the shortest rendering.
+     */
+    private static int lastKept(int precision, int first, int n) {
+        if (precision == 0) {
+            return -1;
         }
+        return first + precision - (precision > n ? 0 : 1);
     }
 
-    private void removeTrailingZeroes() {
-        while (buf[index] == '0') {
+    private static int removeTrailingZeroes(byte[] buf, int index, int last) {
+        while (buf[index] == '0' && index > last) {
             --index;
         }
         if (buf[index] == '.') {
             ++index;
         }
+        return index;
     }
 
-    /*
-    Computes floor((m + 1) 2^28 / 10^8) - 1, needed by [4], as in [3]
-     */
-    private int y(int m) {
-        return (int) (multiplyHigh(
-                (long) (m + 1) << 28,
-                48_357_032_784_585_167L) >>> 18) - 1;
-    }
-
-    private void exponent(int e) {
-        append('E');
+    private static int exponent(byte[] buf, int index, int e) {
+        buf[++index] = 'E';
         if (e < 0) {
-            append('-');
+            buf[++index] = '-';
             e = -e;
         }
         if (e < 10) {
-            appendDigit(e);
-            return;
+            buf[++index] = (byte) ('0' + e);
+            return index;
         }
         /*
         It can be shown ([3]) that
             floor(e / 10) = floor(205 e / 2^11)
          */
         int d = e * 205 >>> 11;
-        appendDigit(d);
-        appendDigit(e - 10 * d);
-    }
-
-    private void append(int c) {
-        buf[++index] = (byte) c;
-    }
-
-    private void appendDigit(int d) {
         buf[++index] = (byte) ('0' + d);
+        buf[++index] = (byte) ('0' + e - 10 * d);
+        return index;
     }
 
-    private String charsToString() {
-        return new String(buf, 0, 0, index + 1);
+    private static String charsToString(byte[] buf, int index) {
+        return new String(buf, 0, index + 1, ISO_8859_1);
     }
 
 }
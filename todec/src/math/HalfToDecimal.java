@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+import static math.MathUtils.*;
+
+/**
+ * This class exposes methods to render an IEEE 754 binary16
+ * (half precision) value, given by its bits in a {@code short},
+ * as a string or as a sequence of ASCII bytes.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class HalfToDecimal {
+    /*
+    The exponent range lies within the one of float, so the selection and
+    the formatting are those of FloatToDecimal, with the precision and the
+    minimum exponent of binary16.
+    Only the smallest subnormal needs a special case of its own.
+     */
+
+    // The precision in bits.
+    private static final int P = 11;
+
+    // Exponent width in bits.
+    private static final int W = (Short.SIZE - 1) - (P - 1);
+
+    // Minimum value of the exponent: -(2^(W-1)) - P + 3.
+    private static final int Q_MIN = (-1 << W - 1) - P + 3;
+
+    // Minimum value of the significand of a normal value: 2^(P-1).
+    private static final int C_MIN = 1 << P - 1;
+
+    // Mask to extract the biased exponent.
+    private static final int BQ_MASK = (1 << W) - 1;
+
+    // Mask to extract the fraction bits.
+    private static final int T_MASK = (1 << P - 1) - 1;
+
+    /*
+    H is the minimal number of decimal digits needed to ensure that
+        for all finite v, round-to-half-even(toString(v)) = v
+     */
+    private static final int H = 5;
+
+    /**
+     * The maximal number of characters in the rendering of a binary16.
+     */
+    public static final int MAX_CHARS = H + 5;
+
+    /*
+    The formatting of FloatToDecimal writes ahead of the rendering, within
+    the room of the longest float rendering, so the arrays it writes to
+    have this larger room. As in BFloat16ToDecimal, toBytes() renders
+    destinations with less room by way of the scratch array of the thread.
+     */
+    private static final int ROOM = FloatToDecimal.MAX_CHARS;
+
+    // Returned by toDecimal(), complemented, to classify its argument.
+    private static final int PLUS_ZERO = 1;
+    private static final int MINUS_ZERO = 2;
+    private static final int PLUS_INF = 3;
+    private static final int MINUS_INF = 4;
+    private static final int NAN = 5;
+
+    /*
+    The longest renderings have one of the forms
+        -ddddd.0        H + 3 characters
+        -0.00ddddd      H + 5 characters
+        -d.ddddE-e      H + 5 characters
+    where there are H digits d.
+     */
+    private HalfToDecimal() {
+    }
+
+    /**
+     * Returns a string rendering of the binary16 value whose bits are
+     * the argument.
+     *
+     * <p>The rendering is specified as in
+     * {@link FloatToDecimal#toString(float)}, except that the decimal
+     * <i>d</i><sub><code>v</code></sub> is selected among the decimals
+     * that round to {@code v} according to the
+     * round-to-closest rule of IEEE 754 binary16 arithmetic.
+     * Thus, it is shortest for binary16, rather than for the {@code float}
+     * {@code v} widens to, and at most 5 digits long.
+     * For example, the binary16 closest to 0.1 is rendered as {@code 0.1},
+     * whereas its widening is rendered as {@code 0.099975586}.
+     *
+     * @param v the bits of the binary16 to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public static String toString(short v) {
+        byte[] buf = new byte[ROOM];
+        int index = toDecimal(buf, -1, v);
+        return index >= 0 ? charsToString(buf, index) : special(~index);
+    }
+
+    /**
+     * Writes the rendering of the binary16 argument into the array
+     * {@code dst}, starting at index {@code off}.
+     *
+     * <p>The characters written are exactly those of {@link #toString(short)},
+     * one byte per character, but no {@link String} is created.
+     * When there is not enough room in {@code dst}, an exception is thrown
+     * and {@code dst} is left unchanged.
+     * A room of {@link #MAX_CHARS} bytes always suffices.
+     *
+     * <p>As in {@link BFloat16ToDecimal#toBytes(short, byte[], int)},
+     * the rendering is written directly into {@code dst} only when
+     * at least {@link FloatToDecimal#MAX_CHARS} bytes are available, and
+     * is otherwise rendered into an array private to the current thread
+     * and then copied.
+     *
+     * @param v the bits of the binary16 to be rendered.
+     * @param dst the destination array.
+     * @param off the index in {@code dst} of the first byte to write.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code off} is negative or if
+     * fewer than the needed bytes are available in {@code dst}
+     * starting at {@code off}.
+     */
+    public static int toBytes(short v, byte[] dst, int off) {
+        // As in FloatToDecimal, with 2 overlapping longs saved
+        if (off >= 0 && dst.length - off >= ROOM) {
+            int last = off + ROOM - 8;
+            long s0 = getLong(dst, off);
+            long s1 = getLong(dst, last);
+            int len = toDecimalChars(dst, off - 1, v) - off + 1;
+            restore(dst, off, len, s0);
+            restore(dst, last, len - (ROOM - 8), s1);
+            return len;
+        }
+        byte[] buf = scratch();
+        int len = toDecimalChars(buf, -1, v) + 1;
+        checkFromIndexSize(off, len, dst.length);
+        System.arraycopy(buf, 0, dst, off, len);
+        return len;
+    }
+
+    /**
+     * Renders {@code len} binary16 elements of {@code a}, starting at index
+     * {@code off}, and appends the renderings to {@code dst},
+     * separated by {@code sep}.
+     *
+     * <p>This is the analogue of
+     * {@link FloatToDecimal#toBytes(float[], int, int, String, ByteBuilder)},
+     * with each element rendered as by {@link #toBytes(short, byte[], int)}.
+     *
+     * @param a the array of binary16 bits to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(short[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        checkFromIndexSize(off, len, a.length);
+        BulkToDecimalEvent event = Events.bulk(null, dst);
+        toDecimalBytes(a, off, len, sep.getBytes(ISO_8859_1), dst);
+        if (event != null) {
+            event.finish("binary16", "java", len, dst);
+        }
+        return dst;
+    }
+
+    /**
+     * Appends the rendering of the binary16 argument to {@code sb}.
+     *
+     * <p>The characters appended are exactly those of
+     * {@link #toString(short)}, but no intermediate {@link String} is created.
+     *
+     * @param sb the {@link StringBuilder} to append to.
+     * @param v the bits of the binary16 to be rendered.
+     * @return {@code sb}.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, short v) {
+        byte[] buf = new byte[ROOM];
+        int index = toDecimal(buf, -1, v);
+        if (index < 0) {
+            return sb.append(special(~index));
+        }
+        sb.ensureCapacity(sb.length() + index + 1);
+        for (int i = 0; i <= index; ++i) {
+            sb.append((char) buf[i]);
+        }
+        return sb;
+    }
+
+    private static String special(int type) {
+        switch (type) {
+            case PLUS_ZERO: return "0.0";
+            case MINUS_ZERO: return "-0.0";
+            case PLUS_INF: return "Infinity";
+            case MINUS_INF: return "-Infinity";
+            default: return "NaN";
+        }
+    }
+
+    private static ByteBuilder toDecimalBytes(short[] a, int off, int len,
+            byte[] sep, ByteBuilder dst) {
+        // As in FloatToDecimal
+        int room = sep.length + ROOM;
+        byte[] buf = dst.bytes;
+        int index = dst.count - 1;
+        for (int i = off, end = off + len; i < end; ++i) {
+            if (index + room >= buf.length) {
+                dst.count = index + 1;
+                dst.ensureCapacity(dst.count + room);
+                buf = dst.bytes;
+            }
+            if (i != off) {
+                for (byte b : sep) {
+                    buf[++index] = b;
+                }
+            }
+            index = toDecimalChars(buf, index, a[i]);
+        }
+        dst.count = index + 1;
+        return dst;
+    }
+
+    /*
+    Renders v into buf after index, including the special values,
+    and returns the index of the last character.
+     */
+    private static int toDecimalChars(byte[] buf, int index, short v) {
+        int last = toDecimal(buf, index, v);
+        if (last >= 0) {
+            return last;
+        }
+        String s = special(~last);
+        for (int i = 0; i < s.length(); ++i) {
+            buf[++index] = (byte) s.charAt(i);
+        }
+        return index;
+    }
+
+    /*
+    Renders v into buf after index and returns the index of the last
+    character when v is finite and non-zero. Otherwise, returns the
+    complement ~type of the type of v, which is negative, and leaves buf
+    unspecified.
+     */
+    private static int toDecimal(byte[] buf, int index, short v) {
+        // The sign extension of bits is masked away, except in the sign.
+        int bits = v;
+        int t = bits & T_MASK;
+        int bq = (bits >>> P - 1) & BQ_MASK;
+        if (bq < BQ_MASK) {
+            if (bits < 0) {
+                buf[++index] = '-';
+            }
+            if (bq != 0) {
+                // normal value
+                return FloatToDecimal.toDecimal(buf, index, P, Q_MIN,
+                        Q_MIN - 1 + bq, C_MIN | t);
+            }
+            if (t > 1) {
+                // subnormal value
+                return FloatToDecimal.toDecimal(buf, index, P, Q_MIN,
+                        Q_MIN, t);
+            }
+            if (t != 0) {
+                /*
+                The smallest subnormal, 2^-24, is the only value whose s is
+                less than 10 in the selection, namely s = 5. Both 5 10^-8
+                and 6 10^-8 round to it, and the closer is 6 10^-8.
+                 */
+                return FloatToDecimal.toChars(buf, index, 0, 6, -8);
+            }
+            return ~(bits == 0 ? PLUS_ZERO : MINUS_ZERO);
+        }
+        if (t != 0) {
+            return ~NAN;
+        }
+        return ~(bits > 0 ? PLUS_INF : MINUS_INF);
+    }
+
+    private static String charsToString(byte[] buf, int index) {
+        return new String(buf, 0, index + 1, ISO_8859_1);
+    }
+
+}
@@ -21,6 +21,12 @@
 
 package math;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import static java.lang.Math.multiplyHigh;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
 /**
  * This class exposes package private utilities for other classes.
  *
@@ -46,9 +52,21 @@ final class MathUtils {
     private static final int Q_2 = 38;
     private static final long C_2 = 913_124_641_741L;
 
-    // The minimum and maximum exponents for floorPow10p1dHigh(int)
-    static final int MIN_EXP = -292;
-    static final int MAX_EXP = 324;
+    /*
+    The minimum and maximum exponents for floorPow10p1dHigh(int).
+    Rendering the shortest decimal only needs exponents in [-292, 324].
+    Parsing in DecimalToDouble also needs those down to -342, and rounding
+    subnormals to 17 significant digits needs those up to 341.
+     */
+    static final int MIN_EXP = -342;
+    static final int MAX_EXP = 341;
+
+    // Used in productTop() and its companions.
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // Accesses 8 bytes of an array in one go.
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, LITTLE_ENDIAN);
 
     private MathUtils() {
     }
@@ -167,11 +185,233 @@ final class MathUtils {
         return floorPow10p1d[e - MIN_EXP << 1 | 1];
     }
 
+    /**
+     * Let <i>g</i> = {@code g1} 2<sup>63</sup> + {@code g0}, where
+     * {@code g1} and {@code g0} are as returned by
+     * {@link #floorPow10p1dHigh(int)} and {@link #floorPow10p1dLow(int)},
+     * possibly with {@code g0} decremented by 1 when 10<sup><i>e</i></sup>
+     * is an integer, so that <i>g</i> = <i>&beta;</i> exactly.
+     * For 2<sup>63</sup> &le; {@code cn} &lt; 2<sup>64</sup>,
+     * with {@code cn} read as unsigned, the exact product is split into
+     * 63 bit limbs as
+     * <p>
+     * {@code cn} <i>g</i> = <i>top</i> 2<sup>126</sup> +
+     * <i>mid</i> 2<sup>63</sup> + <i>low</i>,
+     * <p>
+     * where 2<sup>62</sup> &le; <i>top</i> &lt; 2<sup>64</sup>.
+     * This method returns <i>top</i>, while {@link #productMid(long, long,
+     * long)} and {@link #productLow(long, long)} return <i>mid</i> and
+     * <i>low</i>, respectively.
+     * <p>
+     * The three methods share their intermediate products, so they are
+     * meant to be invoked together on the same arguments, and let the
+     * compiler merge the common subexpressions.
+     *
+     * @param cn the normalized significand.
+     * @param g1 the higher 63 bits of <i>g</i>.
+     * @param g0 the lower 63 bits of <i>g</i>.
+     * @return <i>top</i> as described above.
+     */
+    static long productTop(long cn, long g1, long g0) {
+        // cn g1 = p1 2^63 + p0    and    cn g0 = q1 2^63 + low
+        long p1 = unsignedMultiplyHigh(cn, g1) << 1 | cn * g1 >>> 63;
+        long q1 = unsignedMultiplyHigh(cn, g0) << 1 | cn * g0 >>> 63;
+        long sum = (cn * g1 & MASK_63) + (q1 & MASK_63);
+        return p1 + (sum >>> 63) + (q1 >>> 63);
+    }
+
+    /**
+     * Returns <i>mid</i> as described in
+     * {@link #productTop(long, long, long)}.
+     *
+     * @param cn the normalized significand.
+     * @param g1 the higher 63 bits of <i>g</i>.
+     * @param g0 the lower 63 bits of <i>g</i>.
+     * @return <i>mid</i> as described in
+     * {@link #productTop(long, long, long)}.
+     */
+    static long productMid(long cn, long g1, long g0) {
+        long q1 = unsignedMultiplyHigh(cn, g0) << 1 | cn * g0 >>> 63;
+        return (cn * g1 & MASK_63) + (q1 & MASK_63) & MASK_63;
+    }
+
+    /**
+     * Returns <i>low</i> as described in
+     * {@link #productTop(long, long, long)}.
+     *
+     * @param cn the normalized significand.
+     * @param g0 the lower 63 bits of <i>g</i>.
+     * @return <i>low</i> as described in
+     * {@link #productTop(long, long, long)}.
+     */
+    static long productLow(long cn, long g0) {
+        return cn * g0 & MASK_63;
+    }
+
+    // The high 64 bits of the unsigned product of x and y >= 0.
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return multiplyHigh(x, y) + (x >> 63 & y);
+    }
+
+    /**
+     * Returns the 8 bytes of {@code a} from index {@code i} on, packed
+     * little-endian into a {@code long}.
+     *
+     * <p>The renderers that write directly into the destination array
+     * save the bytes of the room of the rendering in this way, as their
+     * digits extraction writes ahead of the final length.
+     *
+     * @param a the array.
+     * @param i the index of the first byte.
+     * @return the packed bytes.
+     */
+    static long getLong(byte[] a, int i) {
+        return (long) LONG_LE.get(a, i);
+    }
+
+    /**
+     * Stores {@code v} into the 8 bytes of {@code a} from index {@code i}
+     * on, little-endian, as unpacked by {@link #getLong(byte[], int)}.
+     *
+     * @param a the array.
+     * @param i the index of the first byte.
+     * @param v the packed bytes.
+     */
+    static void setLong(byte[] a, int i, long v) {
+        LONG_LE.set(a, i, v);
+    }
+
+    /**
+     * Returns the 8 ASCII digits of 0 &le; {@code m} &lt; 10<sup>8</sup>,
+     * most significant first, packed little-endian into a {@code long},
+     * to be stored by {@link #setLong(byte[], int, long)}.
+     *
+     * <p>Rather than extracting one digit after the other, the digits are
+     * computed in parallel in the lanes of the {@code long}, as in
+     * Lemire, "Converting integers to fixed-digit representations quickly",
+     * https://lemire.me/blog/2021/11/18/.
+     * First the two 4 digits halves are computed in 32-bit lanes, then the
+     * four 2 digits quarters in 16-bit lanes, and finally the digits in
+     * 8-bit lanes. The divisions are replaced by multiplications, with
+     * <pre>
+     *   floor(x / 10^4) = floor(109'951'163 x / 2^40),  0 &le; x &lt; 10^8
+     *   floor(x / 100) = floor(10'486 x / 2^20),  0 &le; x &lt; 10^4
+     *   floor(x / 10) = floor(103 x / 2^10),  0 &le; x &lt; 100
+     * </pre>
+     * where none of the products in a lane overflows into the next.
+     *
+     * @param m the integer whose digits are returned.
+     * @return the packed digits.
+     */
+    static long digits8(int m) {
+        int hi = (int) (m * 109_951_163L >>> 40);
+        long x = (long) (m - 10_000 * hi) << 32 | hi;
+        long q = (x * 10_486 >>> 20) & 0x0000_007F_0000_007FL;
+        x = (x - 100 * q) << 16 | q;
+        q = (x * 103 >>> 10) & 0x000F_000F_000F_000FL;
+        x = (x - 10 * q) << 8 | q;
+        return x + 0x3030_3030_3030_3030L;
+    }
+
+    /**
+     * Restores the bytes of {@code a} from index {@code i} + {@code n} on,
+     * up to {@code i} + 7, to those of {@code s}, as returned by
+     * {@link #getLong(byte[], int)} before they were overwritten.
+     * The bytes below {@code i} + {@code n} are left unchanged.
+     *
+     * @param a the array.
+     * @param i the index of the first byte saved in {@code s}.
+     * @param n the number of leading bytes to leave unchanged,
+     *          possibly negative or above 8.
+     * @param s the saved bytes.
+     */
+    static void restore(byte[] a, int i, int n, long s) {
+        if (n < 8) {
+            long m = n > 0 ? -1L >>> 64 - 8 * n : 0;
+            LONG_LE.set(a, i, (long) LONG_LE.get(a, i) & m | s & ~m);
+        }
+    }
+
+    /*
+    Large enough for the room of the shortest rendering of any type, up to
+    the 25 bytes of DoubleToDecimal.MAX_ECMA_CHARS.
+     */
+    private static final int SCRATCH_LENGTH = 32;
+
+    private static final ThreadLocal<byte[]> SCRATCH =
+            ThreadLocal.withInitial(() -> new byte[SCRATCH_LENGTH]);
+
+    /**
+     * Returns an array of at least 32 bytes, private to the current thread.
+     *
+     * <p>The renderers into destinations that cannot be written in place,
+     * like direct {@link java.nio.ByteBuffer}s or arrays with less than the
+     * room of the rendering, render into this array and then copy the
+     * result, rather than allocating a new array on each call.
+     * As rendering never calls back into user code, the array cannot be in
+     * use by an outer rendering on the same thread.
+     *
+     * @return the scratch array of the current thread.
+     */
+    static byte[] scratch() {
+        return SCRATCH.get();
+    }
+
     /**
      * The precomputed values for {@link #floorPow10p1dHigh(int)} and
      * {@link #floorPow10p1dLow(int)}.
      */
     private static final long[] floorPow10p1d = {
+        /* -342 */ 0x777A_29EB_491D_EB2DL, 0x044F_EA8A_41A8_4ED0L,
+        /* -341 */ 0x4AAC_5A33_0DB2_B2FCL, 0x12B1_F296_6909_3142L,
+        /* -340 */ 0x5D57_70BF_D11F_5FBBL, 0x175E_6F3C_034B_7D93L,
+        /* -339 */ 0x74AD_4CEF_C567_37A9L, 0x7D36_0B0B_041E_5CF8L,
+        /* -338 */ 0x48EC_5015_DB60_82CAL, 0x1E41_C6E6_E292_FA1BL,
+        /* -337 */ 0x5B27_641B_5238_A37CL, 0x65D2_38A0_9B37_B8A2L,
+        /* -336 */ 0x71F1_3D22_26C6_CC5BL, 0x7F46_C6C8_C205_A6CAL,
+        /* -335 */ 0x4736_C635_583C_3FB9L, 0x3F8C_3C3D_7943_883EL,
+        /* -334 */ 0x5904_77C2_AE4B_4FA7L, 0x6F6F_4B4C_D794_6A4EL,
+        /* -333 */ 0x6F45_95B3_59DE_2391L, 0x6B4B_1E20_0D79_84E1L,
+        /* -332 */ 0x458B_7D90_182A_D63BL, 0x130E_F2D4_086B_F30DL,
+        /* -331 */ 0x56EE_5CF4_1E35_8BC9L, 0x77D2_AF89_0A86_EFD0L,
+        /* -330 */ 0x6CA9_F431_25C2_EEBCL, 0x35C7_5B6B_4D28_ABC4L,
+        /* -329 */ 0x43EA_389E_B799_D535L, 0x619C_9923_1039_6B5BL,
+        /* -328 */ 0x54E4_C6C6_6580_4A83L, 0x1A03_BF6B_D447_C631L,
+        /* -327 */ 0x6A1D_F877_FEE0_5D24L, 0x0084_AF46_C959_B7BDL,
+        /* -326 */ 0x4252_BB4A_FF4C_3A36L, 0x4052_ED8C_3DD8_12D6L,
+        /* -325 */ 0x52E7_6A1D_BF1F_48C4L, 0x1067_A8EF_4D4E_178CL,
+        /* -324 */ 0x67A1_44A5_2EE7_1AF5L, 0x1481_932B_20A1_9D6FL,
+        /* -323 */ 0x40C4_CAE7_3D50_70D9L, 0x1CD0_FBFA_F465_0265L,
+        /* -322 */ 0x50F5_FDA1_0CA4_8D0FL, 0x4405_3AF9_B17E_42FFL,
+        /* -321 */ 0x6533_7D09_4FCD_B053L, 0x3506_89B8_1DDD_D3BEL,
+        /* -320 */ 0x7E80_5C4B_A3C1_1C68L, 0x2248_2C26_2555_48AEL,
+        /* -319 */ 0x4F10_39AF_4658_B1C1L, 0x156D_1B97_D755_4D6DL,
+        /* -318 */ 0x62D4_481B_17EE_DE31L, 0x3AC8_627D_CD2A_A0C8L,
+        /* -317 */ 0x7B89_5A21_DDEA_95BDL, 0x697A_7B1D_4075_48FAL,
+        /* -316 */ 0x4D35_D855_2AB2_9D96L, 0x51EC_8CF2_4849_4D9CL,
+        /* -315 */ 0x6083_4E6A_755F_44FCL, 0x2667_B02E_DA5B_A103L,
+        /* -314 */ 0x78A4_2205_12B7_163BL, 0x3001_9C3A_90F2_8944L,
+        /* -313 */ 0x4B66_9543_2BB2_6DE5L, 0x0E01_01A4_9A97_95CBL,
+        /* -312 */ 0x5E40_3A93_F69F_095EL, 0x3181_420D_C13D_7B3DL,
+        /* -311 */ 0x75D0_4938_F446_CBB5L, 0x7DE1_9291_318C_DA0CL,
+        /* -310 */ 0x49A2_2DC3_98AC_3F51L, 0x5EAC_FB9A_BEF8_0848L,
+        /* -309 */ 0x5C0A_B934_7ED7_4F26L, 0x1658_3A81_6EB6_0A5AL,
+        /* -308 */ 0x730D_6781_9E8D_22EFL, 0x5BEE_4921_CA63_8CF0L,
+        /* -307 */ 0x47E8_60B1_0318_35D5L, 0x6974_EDB5_1E7E_3816L,
+        /* -306 */ 0x59E2_78DD_43DE_434BL, 0x23D2_2922_661D_C61CL,
+        /* -305 */ 0x705B_1714_94D5_D41EL, 0x0CC6_B36A_FFA5_37A2L,
+        /* -304 */ 0x4638_EE6C_DD05_A492L, 0x67FC_3022_DFC7_42C6L,
+        /* -303 */ 0x57C7_2A08_1447_0DB7L, 0x41FB_3C2B_97B9_1377L,
+        /* -302 */ 0x6DB8_F48A_1958_D125L, 0x327A_0B36_7DA7_5855L,
+        /* -301 */ 0x4493_98D6_4FD7_82B7L, 0x2F8C_4702_0E88_9735L,
+        /* -300 */ 0x55B8_7F0B_E3CD_6365L, 0x1B6F_58C2_922A_BD02L,
+        /* -299 */ 0x6B26_9ECE_DCC0_BC3EL, 0x424B_2EF3_36B5_6C43L,
+        /* -298 */ 0x42F8_2341_49F8_75A7L, 0x096E_FD58_0231_63AAL,
+        /* -297 */ 0x53B6_2C11_9C76_9310L, 0x6BCA_BCAE_02BD_BC94L,
+        /* -296 */ 0x68A3_B716_0394_37D5L, 0x06BD_6BD9_836D_2BB9L,
+        /* -295 */ 0x4166_526D_C23C_A2E5L, 0x1436_6367_F224_3B54L,
+        /* -294 */ 0x51BF_E709_32CB_CB9EL, 0x3943_FC41_EEAD_4A29L,
+        /* -293 */ 0x662F_E0CB_7F7E_BE86L, 0x0794_FB52_6A58_9CB3L,
         /* -292 */ 0x7FBB_D8FE_5F5E_6E27L, 0x497A_3A27_04EE_C3DFL,
         /* -291 */ 0x4FD5_679E_FB9B_04D8L, 0x5DEC_6458_6315_3A6CL,
         /* -290 */ 0x63CA_C186_BA81_C60EL, 0x7567_7D6E_7BDA_8906L,
@@ -789,6 +1029,23 @@ final class MathUtils {
         /*  322 */ 0x652F_44D8_C5B0_11B4L, 0x0E16_EC67_2C52_F7F2L,
         /*  323 */ 0x7E7B_160E_F71C_1621L, 0x119C_A780_F767_B5EEL,
         /*  324 */ 0x4F0C_EDC9_5A71_8DD4L, 0x5B01_E8B0_9AA0_D1B5L,
+        /*  325 */ 0x62D0_293B_B10D_F149L, 0x71C2_62DC_C149_0622L,
+        /*  326 */ 0x7B84_338A_9D51_6D9CL, 0x2E32_FB93_F19B_47AAL,
+        /*  327 */ 0x4D32_A036_A252_E481L, 0x5CDF_DD3C_7701_0CCBL,
+        /*  328 */ 0x607F_4844_4AE7_9DA2L, 0x1417_D48B_94C1_4FFDL,
+        /*  329 */ 0x789F_1A55_5DA1_850AL, 0x591D_C9AE_79F1_A3FCL,
+        /*  330 */ 0x4B63_7075_5A84_F326L, 0x57B2_9E0D_0C37_067EL,
+        /*  331 */ 0x5E3C_4C92_B126_2FF0L, 0x2D9F_4590_4F44_C81DL,
+        /*  332 */ 0x75CB_5FB7_5D6F_BBECL, 0x3907_16F4_6315_FA24L,
+        /*  333 */ 0x499F_1BD2_9A65_D573L, 0x63A4_6E58_BDED_BC57L,
+        /*  334 */ 0x5C06_E2C7_40FF_4AD0L, 0x5C8D_89EE_ED69_2B6DL,
+        /*  335 */ 0x7308_9B79_113F_1D84L, 0x73B0_EC6A_A8C3_7648L,
+        /*  336 */ 0x47E5_612B_AAC7_7273L, 0x084E_93C2_A97A_29EDL,
+        /*  337 */ 0x59DE_B976_9579_4F0FL, 0x6A62_38B3_53D8_B468L,
+        /*  338 */ 0x7056_67D4_3AD7_A2D3L, 0x64FA_C6E0_28CE_E182L,
+        /*  339 */ 0x4636_00E4_A4C6_C5C4L, 0x2F1C_BC4C_1981_4CF1L,
+        /*  340 */ 0x57C3_811D_CDF8_7735L, 0x3AE3_EB5F_1FE1_A02EL,
+        /*  341 */ 0x6DB4_6165_4176_9502L, 0x699C_E636_E7DA_0839L,
     };
 
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * This class exposes methods to render large arrays of {@code double}s
+ * and {@code float}s in parallel, on a {@link ForkJoinPool}.
+ *
+ * <p>The slice to render is split into chunks of consecutive elements.
+ * Each chunk is rendered into its own {@link ByteBuilder} by
+ * {@link DoubleToDecimal#toBytes(double[], int, int, String, ByteBuilder)}
+ * or {@link FloatToDecimal#toBytes(float[], int, int, String, ByteBuilder)},
+ * and the chunks are then stitched together in order, with separators
+ * in between. Thus, the output is byte for byte the same as the one
+ * of the sequential methods.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class ParallelToDecimal {
+
+    // Slices shorter than twice this are rendered sequentially.
+    private static final int MIN_CHUNK = 1 << 14;
+
+    // The number of elements in the chunks of the writeTo() methods.
+    private static final int WRITE_CHUNK = 1 << 16;
+
+    // Chunks per worker thread, to even out unequal rendering costs.
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelToDecimal() {
+    }
+
+    // Renders the len elements starting at from into dst.
+    private interface SliceRenderer {
+        void render(int from, int len, ByteBuilder dst);
+    }
+
+    /**
+     * Same as {@link #toBytes(double[], int, int, String, ByteBuilder,
+     * ForkJoinPool)}, on the {@linkplain ForkJoinPool#commonPool()
+     * common pool}.
+     *
+     * @param a the array of {@code double}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(double[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        return toBytes(a, off, len, sep, dst, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Appends to {@code dst} exactly the same bytes as
+     * {@link DoubleToDecimal#toBytes(double[], int, int, String, ByteBuilder)},
+     * but renders them in parallel on {@code pool}.
+     *
+     * @param a the array of {@code double}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @param pool the pool that renders the chunks.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(double[] a, int off, int len,
+            String sep, ByteBuilder dst, ForkJoinPool pool) {
+        checkFromIndexSize(off, len, a.length);
+        return toBytes(off, len, sep, dst, pool,
+                (from, n, bb) -> DoubleToDecimal.toBytes(a, from, n, sep, bb));
+    }
+
+    /**
+     * Same as {@link #toBytes(float[], int, int, String, ByteBuilder,
+     * ForkJoinPool)}, on the {@linkplain ForkJoinPool#commonPool()
+     * common pool}.
+     *
+     * @param a the array of {@code float}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(float[] a, int off, int len,
+            String sep, ByteBuilder dst) {
+        return toBytes(a, off, len, sep, dst, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Appends to {@code dst} exactly the same bytes as
+     * {@link FloatToDecimal#toBytes(float[], int, int, String, ByteBuilder)},
+     * but renders them in parallel on {@code pool}.
+     *
+     * @param a the array of {@code float}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param dst the destination.
+     * @param pool the pool that renders the chunks.
+     * @return {@code dst}.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     */
+    public static ByteBuilder toBytes(float[] a, int off, int len,
+            String sep, ByteBuilder dst, ForkJoinPool pool) {
+        checkFromIndexSize(off, len, a.length);
+        return toBytes(off, len, sep, dst, pool,
+                (from, n, bb) -> FloatToDecimal.toBytes(a, from, n, sep, bb));
+    }
+
+    /**
+     * Writes to {@code out} exactly the same bytes as
+     * {@link DoubleToDecimal#toBytes(double[], int, int, String, ByteBuilder)}
+     * would produce, but renders them in parallel on {@code pool}.
+     *
+     * <p>Unlike {@link #toBytes(double[], int, int, String, ByteBuilder,
+     * ForkJoinPool)}, the output is not limited to the capacity of a
+     * single array: the slice is rendered a window of chunks at a time,
+     * and the next window is rendered while the current one is written.
+     * The memory needed is thus bounded, independently of {@code len}.
+     *
+     * @param a the array of {@code double}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param out the destination.
+     * @param pool the pool that renders the chunks.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     * @throws IOException if {@code out} throws it.
+     */
+    public static void writeTo(double[] a, int off, int len,
+            String sep, OutputStream out, ForkJoinPool pool)
+            throws IOException {
+        checkFromIndexSize(off, len, a.length);
+        writeTo(off, len, sep, out, pool,
+                (from, n, bb) -> DoubleToDecimal.toBytes(a, from, n, sep, bb));
+    }
+
+    /**
+     * Writes to {@code out} exactly the same bytes as
+     * {@link FloatToDecimal#toBytes(float[], int, int, String, ByteBuilder)}
+     * would produce, but renders them in parallel on {@code pool}.
+     * See {@link #writeTo(double[], int, int, String, OutputStream,
+     * ForkJoinPool)} for details.
+     *
+     * @param a the array of {@code float}s to be rendered.
+     * @param off the index in {@code a} of the first element to render.
+     * @param len the number of elements to render.
+     * @param sep the separator between renderings.
+     * @param out the destination.
+     * @param pool the pool that renders the chunks.
+     * @throws IndexOutOfBoundsException if {@code off} or {@code len}
+     * do not denote a range in {@code a}.
+     * @throws IOException if {@code out} throws it.
+     */
+    public static void writeTo(float[] a, int off, int len,
+            String sep, OutputStream out, ForkJoinPool pool)
+            throws IOException {
+        checkFromIndexSize(off, len, a.length);
+        writeTo(off, len, sep, out, pool,
+                (from, n, bb) -> FloatToDecimal.toBytes(a, from, n, sep, bb));
+    }
+
+    private static ByteBuilder toBytes(int off, int len, String sep,
+            ByteBuilder dst, ForkJoinPool pool, SliceRenderer renderer) {
+        int n = Math.min(pool.getParallelism() * CHUNKS_PER_THREAD,
+                len / MIN_CHUNK);
+        if (n < 2) {
+            renderer.render(off, len, dst);
+            return dst;
+        }
+        /*
+        Chunk i covers [off + len i / n, off + len (i + 1) / n).
+        As len < 2^31 and n < 2^31, the products are computed as longs.
+         */
+        ByteBuilder[] parts = new ByteBuilder[n];
+        pool.invoke(new ChunksAction(0, n, i -> {
+            int from = (int) ((long) len * i / n);
+            int to = (int) ((long) len * (i + 1) / n);
+            renderer.render(off + from, to - from,
+                    parts[i] = new ByteBuilder());
+        }));
+        byte[] sepBytes = sep.getBytes(ISO_8859_1);
+        long total = (long) (n - 1) * sepBytes.length;
+        for (ByteBuilder part : parts) {
+            total += part.count;
+        }
+        dst.ensureCapacity((int) Math.min(dst.count + total,
+                Integer.MAX_VALUE));
+        for (int i = 0; i < n; ++i) {
+            if (i != 0) {
+                dst.append(sepBytes, 0, sepBytes.length);
+            }
+            dst.append(parts[i]);
+        }
+        return dst;
+    }
+
+    private static void writeTo(int off, int len, String sep,
+            OutputStream out, ForkJoinPool pool, SliceRenderer renderer)
+            throws IOException {
+        /*
+        Windows of w chunks, each of WRITE_CHUNK elements (except possibly
+        the last one), are rendered alternately into front and back.
+        While the chunks in front are written, those in back are rendered.
+         */
+        int w = pool.getParallelism() * CHUNKS_PER_THREAD;
+        ByteBuilder[] front = newBuilders(w);
+        ByteBuilder[] back = newBuilders(w);
+        byte[] sepBytes = sep.getBytes(ISO_8859_1);
+        long chunks = (len + (long) WRITE_CHUNK - 1) / WRITE_CHUNK;
+        ForkJoinTask<?> next = pool.submit(
+                renderWindow(off, len, 0, chunks, front, renderer));
+        for (long c = 0; c < chunks; c += w) {
+            next.join();
+            ByteBuilder[] current = front;
+            front = back;
+            back = current;
+            next = c + w < chunks
+                    ? pool.submit(renderWindow(off, len, c + w, chunks,
+                            front, renderer))
+                    : null;
+            try {
+                int k = (int) Math.min(w, chunks - c);
+                for (int i = 0; i < k; ++i) {
+                    if (c + i != 0) {
+                        out.write(sepBytes);
+                    }
+                    current[i].writeTo(out);
+                }
+            } catch (IOException | RuntimeException | Error ex) {
+                if (next != null) {
+                    next.cancel(false);
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private static ByteBuilder[] newBuilders(int n) {
+        ByteBuilder[] bbs = new ByteBuilder[n];
+        for (int i = 0; i < n; ++i) {
+            bbs[i] = new ByteBuilder();
+        }
+        return bbs;
+    }
+
+    // Renders chunks [c, min(c + parts.length, chunks)) into parts.
+    private static ChunksAction renderWindow(int off, int len, long c,
+            long chunks, ByteBuilder[] parts, SliceRenderer renderer) {
+        return new ChunksAction(0, (int) Math.min(parts.length, chunks - c),
+                i -> {
+                    long from = (c + i) * WRITE_CHUNK;
+                    int n = (int) Math.min(WRITE_CHUNK, len - from);
+                    renderer.render(off + (int) from, n, parts[i].clear());
+                });
+    }
+
+    // Performs leaf.accept(i) for all i in [lo, hi), in parallel.
+    private static final class ChunksAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final IntConsumer leaf;
+
+        ChunksAction(int lo, int hi, IntConsumer leaf) {
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 1) {
+                if (lo < hi) {
+                    leaf.accept(lo);
+                }
+                return;
+            }
+            int mid = lo + hi >>> 1;
+            invokeAll(new ChunksAction(lo, mid, leaf),
+                    new ChunksAction(mid, hi, leaf));
+        }
+
+    }
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the paths taken by {@link DoubleToDecimal} and
+ * {@link FloatToDecimal} while selecting and formatting the decimals of
+ * finite, non-zero values, to learn which paths the rendered data
+ * actually exercises. The renderings of {@link BFloat16ToDecimal} and
+ * {@link HalfToDecimal}, which share the selection and formatting of
+ * {@link FloatToDecimal}, are counted with those of {@code float}s.
+ *
+ * <p>Counting is disabled by default, and is enabled by launching the JVM
+ * with {@code -Dmath.pathCounters=true}. As {@link #ENABLED} is a
+ * {@code static final} constant, the JIT compiler removes the counting
+ * altogether when it is disabled. When it is enabled, the counters are
+ * {@link LongAdder}s, so that threads rendering concurrently do not
+ * contend on them.
+ *
+ * <p>The counts are also published over JMX, once
+ * {@link #registerMBean()} is invoked. Only this method needs the module
+ * {@code java.management}, which is not required otherwise.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class PathCounters {
+
+    /**
+     * The paths that are counted. Each selection of a decimal takes
+     * exactly one of the first three paths, and each formatting in the
+     * format of {@link DoubleToDecimal#toString(double)} exactly one of
+     * the last three. The others are taken by some selections only.
+     */
+    public enum Path {
+
+        /**
+         * The decimal is selected among those with the regular spacing
+         * 2<sup>q</sup> around v.
+         */
+        REGULAR_SPACING,
+
+        /**
+         * The decimal is selected among those with the irregular spacing
+         * around a power of 2, which is closer below than above it.
+         */
+        IRREGULAR_SPACING,
+
+        /**
+         * The decimal of an integer or of a decimal with few fraction
+         * digits is selected by the fast path of {@link DoubleToDecimal},
+         * without the full algorithm.
+         */
+        SHORT_DECIMAL,
+
+        /**
+         * The shorter decimal, with one digit less than the full
+         * precision, is the only one in the rounding interval.
+         */
+        SHORTER_DECIMAL,
+
+        /**
+         * The decimal of one of the smallest subnormal values is
+         * selected by a special case.
+         */
+        SUBNORMAL_CASE,
+
+        /**
+         * The two decimals of full precision around v both lie in the
+         * rounding interval, and the closest to v is selected.
+         */
+        BOTH_IN_RV,
+
+        /**
+         * The decimal is formatted in plain notation, with no leading
+         * zeroes.
+         */
+        PLAIN_CHARS,
+
+        /**
+         * The decimal is formatted in plain notation, with leading zeroes.
+         */
+        LEADING_ZEROES_CHARS,
+
+        /**
+         * The decimal is formatted in computerized scientific notation.
+         */
+        EXPONENT_CHARS,
+
+    }
+
+    /**
+     * Whether counting is enabled, as set by the system property
+     * {@code math.pathCounters}.
+     */
+    public static final boolean ENABLED =
+            Boolean.getBoolean("math.pathCounters");
+
+    /**
+     * The name under which {@link #registerMBean()} registers the MBean.
+     */
+    public static final String OBJECT_NAME = "math:type=PathCounters";
+
+    private static final Path[] PATHS = Path.values();
+
+    static final PathCounters DOUBLE = new PathCounters();
+    static final PathCounters FLOAT = new PathCounters();
+
+    /*
+    The paths taken by the bulk rendering in progress on each thread, for
+    its BulkToDecimalEvent, or null when there is none. As a bulk rendering
+    runs on a single thread, its tally is not affected by the renderings
+    of other threads, unlike the adders.
+     */
+    private static final ThreadLocal<long[]> TALLY = new ThreadLocal<>();
+
+    private final LongAdder[] adders = new LongAdder[PATHS.length];
+
+    private PathCounters() {
+        for (int i = 0; i < adders.length; ++i) {
+            adders[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the counters of the renderings of {@code double}s.
+     *
+     * @return the counters of {@link DoubleToDecimal}.
+     */
+    public static PathCounters forDouble() {
+        return DOUBLE;
+    }
+
+    /**
+     * Returns the counters of the renderings of {@code float}s.
+     *
+     * @return the counters of {@link FloatToDecimal}.
+     */
+    public static PathCounters forFloat() {
+        return FLOAT;
+    }
+
+    /*
+    Small enough to be always inlined, so that the check of the constant
+    ENABLED removes it from the callers when counting is disabled.
+     */
+    void increment(Path p) {
+        if (ENABLED) {
+            adders[p.ordinal()].increment();
+            tally(p);
+        }
+    }
+
+    private static void tally(Path p) {
+        long[] t = TALLY.get();
+        if (t != null) {
+            ++t[p.ordinal()];
+        }
+    }
+
+    /*
+    Starts tallying the paths taken on the current thread into the returned
+    array, indexed by their ordinals, until stopTally(). A tally left over
+    by a rendering that threw is replaced by the next one.
+     */
+    static long[] startTally() {
+        long[] t = new long[PATHS.length];
+        TALLY.set(t);
+        return t;
+    }
+
+    static void stopTally() {
+        TALLY.remove();
+    }
+
+    /**
+     * Returns the number of times path {@code p} was taken so far.
+     *
+     * <p>The count is exact when no rendering is in progress, and
+     * an estimate otherwise. It is always 0 when counting is disabled.
+     *
+     * @param p the path.
+     * @return the number of times {@code p} was taken.
+     */
+    public long count(Path p) {
+        return adders[p.ordinal()].sum();
+    }
+
+    /**
+     * Returns the counts of all paths, as by {@link #count(Path)}.
+     *
+     * @return a new map from all paths to their counts.
+     */
+    public Map<Path, Long> counts() {
+        Map<Path, Long> m = new EnumMap<>(Path.class);
+        for (Path p : PATHS) {
+            m.put(p, count(p));
+        }
+        return m;
+    }
+
+    /**
+     * Resets all counts to 0.
+     * Renderings in progress might still be counted afterwards.
+     */
+    public void reset() {
+        for (LongAdder a : adders) {
+            a.reset();
+        }
+    }
+
+    /**
+     * The management interface of the counters of both types, as
+     * registered by {@link #registerMBean()}.
+     * The maps are from the names of the paths to their counts.
+     */
+    public interface PathCountersMXBean {
+
+        /**
+         * Returns {@link PathCounters#ENABLED}.
+         *
+         * @return whether counting is enabled.
+         */
+        boolean isEnabled();
+
+        /**
+         * Returns the counts of {@link PathCounters#forDouble()}.
+         *
+         * @return the counts of the renderings of {@code double}s.
+         */
+        Map<String, Long> getDoubleCounts();
+
+        /**
+         * Returns the counts of {@link PathCounters#forFloat()}.
+         *
+         * @return the counts of the renderings of {@code float}s.
+         */
+        Map<String, Long> getFloatCounts();
+
+        /**
+         * Resets the counts of both types.
+         */
+        void reset();
+
+    }
+
+    private static final class Bean implements PathCountersMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public Map<String, Long> getDoubleCounts() {
+            return names(DOUBLE);
+        }
+
+        @Override
+        public Map<String, Long> getFloatCounts() {
+            return names(FLOAT);
+        }
+
+        @Override
+        public void reset() {
+            DOUBLE.reset();
+            FLOAT.reset();
+        }
+
+        private static Map<String, Long> names(PathCounters c) {
+            Map<String, Long> m = new LinkedHashMap<>();
+            for (Path p : PATHS) {
+                m.put(p.name(), c.count(p));
+            }
+            return m;
+        }
+
+    }
+
+    /**
+     * Registers a {@link PathCountersMXBean} in the platform MBean server,
+     * under the name {@value #OBJECT_NAME}.
+     *
+     * <p>Neither the result nor the exceptions are types of the module
+     * {@code java.management}, so that the signature does not need it.
+     *
+     * @return the name of the registered MBean, {@value #OBJECT_NAME}.
+     * @throws IllegalStateException if the MBean cannot be registered,
+     * in particular if it is already registered, with the
+     * {@link javax.management.JMException} as its cause.
+     */
+    public static String registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException(
+                    "cannot register " + OBJECT_NAME, e);
+        }
+        return OBJECT_NAME;
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.Double.doubleToRawLongBits;
+import static java.lang.Float.floatToRawIntBits;
+
+/**
+ * A bounded cache of the renderings of
+ * {@link DoubleToDecimal#toString(double)} and
+ * {@link FloatToDecimal#toString(float)}, for streams where the same values
+ * recur often, like 0.0, 1.0, small integers or common percentages.
+ *
+ * <p>The cache is direct-mapped: the raw bits of a value select a single
+ * slot, and a rendering only ever evicts the previous occupant of its slot.
+ * The {@code double}s and the {@code float}s have separate slots.
+ * The returned strings are always equal to those of the uncached methods,
+ * but not necessarily the same instances: a hit returns the cached
+ * string, a miss a new one.
+ *
+ * <p>Instances are safe for use by multiple threads, without any locking.
+ * Concurrent misses on the same slot might render the same value more than
+ * once, and the last one wins the slot. The counters are striped, so that
+ * threads do not contend on them either.
+ *
+ * @author Raffaello Giulietti
+ */
+final public class ToDecimalCache {
+
+    /*
+    The slots hold immutable entries, safely published by their final
+    fields even when read racily, so plain array accesses suffice.
+     */
+    private static final class DoubleEntry {
+
+        final long bits;
+        final String s;
+
+        DoubleEntry(long bits, String s) {
+            this.bits = bits;
+            this.s = s;
+        }
+
+    }
+
+    private static final class FloatEntry {
+
+        final int bits;
+        final String s;
+
+        FloatEntry(int bits, String s) {
+            this.bits = bits;
+            this.s = s;
+        }
+
+    }
+
+    // The largest number of slots per type.
+    private static final int MAX_SIZE = 1 << 30;
+
+    // The multiplier of Fibonacci hashing: 2^64 / golden ratio, odd.
+    private static final long PHI = 0x9E37_79B9_7F4A_7C15L;
+
+    private final DoubleEntry[] doubles;
+    private final FloatEntry[] floats;
+
+    // The right shift of the hash that leaves the index of the slot.
+    private final int shift;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache with at least {@code size} slots for the
+     * {@code double}s and as many for the {@code float}s.
+     * The number of slots is rounded up to a power of 2, and is at least 2.
+     *
+     * @param size the minimal number of slots per type.
+     * @throws IllegalArgumentException if {@code size} is not positive or
+     * exceeds 2<sup>30</sup>.
+     */
+    public ToDecimalCache(int size) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size " + size +
+                    " is not in [1, " + MAX_SIZE + "]");
+        }
+        int n = size <= 2 ? 2 : Integer.highestOneBit(size - 1) << 1;
+        doubles = new DoubleEntry[n];
+        floats = new FloatEntry[n];
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(n);
+    }
+
+    /**
+     * Returns the number of slots per type.
+     *
+     * @return the number of slots per type.
+     */
+    public int size() {
+        return doubles.length;
+    }
+
+    /**
+     * Returns the same string as {@link DoubleToDecimal#toString(double)}.
+     *
+     * @param v the {@code double} to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public String toString(double v) {
+        long bits = doubleToRawLongBits(v);
+        int i = index(bits);
+        DoubleEntry e = doubles[i];
+        if (e != null && e.bits == bits) {
+            hits.increment();
+            return e.s;
+        }
+        misses.increment();
+        String s = DoubleToDecimal.toString(v);
+        doubles[i] = new DoubleEntry(bits, s);
+        return s;
+    }
+
+    /**
+     * Returns the same string as {@link FloatToDecimal#toString(float)}.
+     *
+     * @param v the {@code float} to be rendered.
+     * @return a string rendering of the argument.
+     */
+    public String toString(float v) {
+        int bits = floatToRawIntBits(v);
+        int i = index(bits);
+        FloatEntry e = floats[i];
+        if (e != null && e.bits == bits) {
+            hits.increment();
+            return e.s;
+        }
+        misses.increment();
+        String s = FloatToDecimal.toString(v);
+        floats[i] = new FloatEntry(bits, s);
+        return s;
+    }
+
+    /**
+     * Returns the number of renderings found in the cache so far.
+     *
+     * <p>The count is exact when no rendering is in progress, and
+     * an estimate otherwise.
+     *
+     * @return the number of hits.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of renderings not found in the cache so far.
+     *
+     * <p>The count is exact when no rendering is in progress, and
+     * an estimate otherwise.
+     *
+     * @return the number of misses.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Empties the cache and resets the counters.
+     * Renderings in progress might still fill some slots afterwards.
+     */
+    public void clear() {
+        Arrays.fill(doubles, null);
+        Arrays.fill(floats, null);
+        hits.reset();
+        misses.reset();
+    }
+
+    /*
+    Fibonacci hashing spreads values that differ only in their high bits,
+    like small integers, or only in their low bits, over all the slots.
+     */
+    private int index(long bits) {
+        return (int) ((bits * PHI) >>> shift);
+    }
+
+}
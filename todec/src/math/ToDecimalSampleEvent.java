@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for the rendering of a single value by
+ * {@link DoubleToDecimal#toString(double)},
+ * {@link DoubleToDecimal#toBytes(double, byte[], int)},
+ * {@link DoubleToDecimal#toBytes(double, java.nio.ByteBuffer)}
+ * or the analogous methods of {@link FloatToDecimal}.
+ * Its duration is the elapsed time of the rendering.
+ *
+ * <p>As a rendering takes only tens of nanoseconds, only a random sample
+ * of the renderings emits the event, on average one in
+ * {@link #getSampleInterval()}.
+ * The initial interval is 1024, unless set by the system property
+ * {@code math.jfrSampleInterval}.
+ * Until JFR is initialized, the methods only check that it is not.
+ * Afterwards, they draw a random number and, for the sampled renderings
+ * only, check whether the event is enabled. No event is allocated unless
+ * it is enabled.
+ * When the module {@code jdk.jfr} is absent, they check nothing.
+ *
+ * @author Raffaello Giulietti
+ */
+@Name("math.ToDecimalSample")
+@Label("Sampled Decimal Rendering")
+@Category({"Java Application", "Decimal Rendering"})
+@Description("Rendering of a single, randomly sampled floating-point value")
+@StackTrace(false)
+final public class ToDecimalSampleEvent extends Event {
+
+    @Label("Type")
+    @Description("double or float")
+    public String type;
+
+    @Label("Value")
+    public double value;
+
+    @Label("Length")
+    @Description("The number of characters of the rendering")
+    public int length;
+
+    private static volatile int sampleInterval =
+            checkSampleInterval(Integer.getInteger(
+                    "math.jfrSampleInterval", 1024));
+
+    /*
+    Only initialized once JFR is, as registering the event type before
+    would cost the renderers that never record anything.
+     */
+    private static final class Type {
+        static final EventType TYPE =
+                EventType.getEventType(ToDecimalSampleEvent.class);
+    }
+
+    // Instances are created by the renderers only.
+    ToDecimalSampleEvent() {
+    }
+
+    /**
+     * Returns the average number of renderings per event.
+     *
+     * @return the sample interval.
+     */
+    public static int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Sets the average number of renderings per event.
+     * An interval of 1 emits an event for every rendering.
+     *
+     * @param n the sample interval.
+     * @throws IllegalArgumentException if {@code n} is not positive.
+     */
+    public static void setSampleInterval(int n) {
+        sampleInterval = checkSampleInterval(n);
+    }
+
+    private static int checkSampleInterval(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("sample interval " + n +
+                    " is not positive");
+        }
+        return n;
+    }
+
+    /*
+    Returns a begun event when the event is enabled and the rendering is
+    sampled, or null otherwise.
+    The sample is drawn first, as it is cheaper than checking whether the
+    event is enabled, and an event is allocated only when it is, so that
+    the renderers stay free of allocations while it is disabled.
+     */
+    static ToDecimalSampleEvent start() {
+        if (!FlightRecorder.isInitialized()
+                || ThreadLocalRandom.current().nextInt(sampleInterval) != 0
+                || !Type.TYPE.isEnabled()) {
+            return null;
+        }
+        ToDecimalSampleEvent event = new ToDecimalSampleEvent();
+        event.begin();
+        return event;
+    }
+
+    /*
+    Ends the event begun by start() and commits it, unless it falls below
+    the threshold of the recording.
+     */
+    void finish(String type, double value, int length) {
+        end();
+        if (shouldCommit()) {
+            this.type = type;
+            this.value = value;
+            this.length = length;
+            commit();
+        }
+    }
+
+}
@@ -19,6 +19,19 @@
  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
  */
 
+/*
+Both modules are optional at run time. The renderers touch the JFR events
+only when jdk.jfr is readable, and java.management is needed only to
+register the MBean of PathCounters. Users of these features require the
+modules themselves.
+
+As the public events of the package extend jdk.jfr.Event, jdk.jfr is also
+transitive, so that the modules compiling against them read it. No type of
+java.management appears in the exported API.
+ */
 module todec {
+    requires static java.management;
+    requires static transitive jdk.jfr;
+
     exports math;
 }
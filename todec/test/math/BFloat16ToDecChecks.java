@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class BFloat16ToDecChecks extends Float16Checker {
+
+    private static final String[][] KNOWN = {
+            {"0000", "0.0"},
+            {"8000", "-0.0"},
+            {"3f80", "1.0"},
+            {"bf80", "-1.0"},
+            {"3dcd", "0.1"},
+            {"3eab", "0.334"},
+            {"4b18", "9960000.0"},
+            {"4b19", "1.0E7"},
+            {"7f7f", "3.39E38"},
+            {"0001", "9.2E-41"},
+            {"0002", "1.8E-40"},
+            {"0080", "1.18E-38"},
+            {"7f80", "Infinity"},
+            {"ff80", "-Infinity"},
+            {"7fc0", "NaN"},
+    };
+
+    private BFloat16ToDecChecks() {
+        super("bfloat16", 8);
+    }
+
+    @Override
+    String toString(short v) {
+        return BFloat16ToDecimal.toString(v);
+    }
+
+    @Override
+    StringBuilder appendTo(StringBuilder sb, short v) {
+        return BFloat16ToDecimal.appendTo(sb, v);
+    }
+
+    @Override
+    int toBytes(short v, byte[] dst, int off) {
+        return BFloat16ToDecimal.toBytes(v, dst, off);
+    }
+
+    @Override
+    ByteBuilder toBytes(short[] a, int off, int len, String sep,
+            ByteBuilder dst) {
+        return BFloat16ToDecimal.toBytes(a, off, len, sep, dst);
+    }
+
+    @Override
+    int maxChars() {
+        return BFloat16ToDecimal.MAX_CHARS;
+    }
+
+    public static void main(String[] args) {
+        new BFloat16ToDecChecks().test(KNOWN);
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
+import java.util.Random;
+
+import static java.lang.Double.doubleToRawLongBits;
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.floatToRawIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class DecimalToDoubleChecks {
+
+    private static void check(boolean claim, String s) {
+        if (!claim) {
+            throw new RuntimeException("DecimalToDouble parses \"" + s +
+                    "\" incorrectly");
+        }
+    }
+
+    /*
+    The reference results are those of Double.parseDouble() and of
+    BigDecimal.floatValue(), as Float.parseFloat() might round twice.
+     */
+    private static void parse(String s) {
+        check(doubleToRawLongBits(DecimalToDouble.parseDouble(s)) ==
+                doubleToRawLongBits(Double.parseDouble(s)), s);
+        float f = new BigDecimal(s).floatValue();
+        check(floatToRawIntBits(DecimalToDouble.parseFloat(s)) ==
+                floatToRawIntBits(s.startsWith("-") ? -Math.abs(f) : f), s);
+    }
+
+    private static void testSyntax() {
+        String[] accepted = {
+                "0", "-0", "+0", "0.0", "1.", ".5", "-.5e-1", "1E+2",
+                "007", "NaN", "-NaN", "Infinity", "-Infinity",
+        };
+        for (String s : accepted) {
+            check(Double.compare(DecimalToDouble.parseDouble(s),
+                    Double.parseDouble(s)) == 0, s);
+        }
+        String[] rejected = {
+                "", "-", ".", "e1", "1e", "1e+", " 1", "1 ", "1.0f", "0x1p0",
+                "nan", "Inf", "1..0", "1e1.0", "--1",
+        };
+        for (String s : rejected) {
+            try {
+                DecimalToDouble.parseDouble(s);
+                check(false, s);
+            } catch (NumberFormatException ex) {
+                // expected
+            }
+        }
+    }
+
+    private static void testExtremeValues() {
+        String[] values = {
+                "4.9E-324", "2.4703282292062327E-324",
+                "2.4703282292062328E-324", "1e-400", "2.2250738585072014E-308",
+                "1.7976931348623157E308", "1.7976931348623158E308",
+                "1.7976931348623159E308", "1e400",
+                "1.4E-45", "7.006492321624085E-46", "7.006492321624087E-46",
+                "3.4028235E38", "3.4028236E38",
+                "9007199254740993", "9007199254740992.5",
+                "123456789012345678901234567890e-50",
+                "0.000000000000000000000000000000000000000001",
+        };
+        for (String s : values) {
+            parse(s);
+        }
+    }
+
+    /*
+    The renderings of DoubleToDecimal and FloatToDecimal must round trip.
+     */
+    private static void testRoundTrip() {
+        Random r = new Random();
+        for (int i = 0; i < 1_000_000; ++i) {
+            double v = longBitsToDouble(r.nextLong());
+            String s = DoubleToDecimal.toString(v);
+            check(Double.compare(DecimalToDouble.parseDouble(s), v) == 0, s);
+            float f = intBitsToFloat(r.nextInt());
+            s = FloatToDecimal.toString(f);
+            check(Float.compare(DecimalToDouble.parseFloat(s), f) == 0, s);
+        }
+    }
+
+    /*
+    Random digit strings, some longer than 19 digits, with exponents
+    covering the ranges of doubles and floats, including subnormals.
+     */
+    private static void testRandomDigits() {
+        Random r = new Random();
+        for (int i = 0; i < 200_000; ++i) {
+            int len = 1 + r.nextInt(25);
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < len; ++k) {
+                sb.append((char) ('0' + r.nextInt(10)));
+            }
+            if (r.nextBoolean()) {
+                sb.insert(r.nextInt(len + 1), '.');
+            }
+            parse(sb.append('e').append(r.nextInt(700) - 350).toString());
+        }
+    }
+
+    /*
+    Decimals exactly halfway between two adjacent doubles, or floats,
+    and their closest neighbors, are the hardest to round correctly.
+     */
+    private static void testHalfway() {
+        Random r = new Random();
+        BigDecimal tiny = BigDecimal.ONE.scaleByPowerOfTen(-1_200);
+        BigDecimal two = BigDecimal.valueOf(2);
+        for (int i = 0; i < 10_000; ++i) {
+            double v = longBitsToDouble(r.nextLong() & 0x7FEF_FFFF_FFFF_FFFFL);
+            BigDecimal h = new BigDecimal(v)
+                    .add(new BigDecimal(Math.ulp(v)).divide(two));
+            parse(h.toString());
+            parse(h.add(tiny).toString());
+            parse(h.subtract(tiny).toString());
+        }
+    }
+
+    /*
+    Walks a separated sequence of renderings in place, in byte arrays and
+    in heap and direct buffers, checking values and consumed lengths.
+     */
+    private static void testBytes() {
+        Random r = new Random();
+        int n = 10_000;
+        double[] ds = new double[n];
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < n; ++i) {
+            ds[i] = longBitsToDouble(r.nextLong());
+            sb.append(ds[i]).append(i % 2 == 0 ? "," : "e;");
+        }
+        byte[] bytes = sb.toString().getBytes(ISO_8859_1);
+
+        ParsePosition pos = new ParsePosition(0);
+        int off = 1;
+        for (int i = 0; i < n; ++i) {
+            double v = DecimalToDouble.parseDouble(bytes, off,
+                    bytes.length - off, pos);
+            String s = Double.toString(ds[i]);
+            check(Double.compare(v, ds[i]) == 0, s);
+            check(pos.getIndex() == off + s.length(), s);
+            off = pos.getIndex() + (i % 2 == 0 ? 1 : 2);
+        }
+        check(off == bytes.length, "[...]");
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes).slice(1, bytes.length - 1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 1)
+                .put(heap.duplicate()).flip();
+        for (ByteBuffer bb : new ByteBuffer[] {heap, direct}) {
+            for (int i = 0; i < n; ++i) {
+                int p = bb.position();
+                double v = DecimalToDouble.parseDouble(bb);
+                String s = Double.toString(ds[i]);
+                check(Double.compare(v, ds[i]) == 0, s);
+                check(bb.position() == p + s.length(), s);
+                bb.position(bb.position() + (i % 2 == 0 ? 1 : 2));
+            }
+            check(!bb.hasRemaining(), "[...]");
+        }
+
+        /*
+        Numbers longer than the window copied from a direct or a read-only
+        buffer, and shorter ones at its end.
+         */
+        String longer = "0." + "3".repeat(100) + "e-1x";
+        ByteBuffer lb = ByteBuffer.allocateDirect(longer.length())
+                .put(longer.getBytes(ISO_8859_1)).flip();
+        check(DecimalToDouble.parseDouble(lb) == 0.03333333333333333
+                && lb.position() == longer.length() - 1, longer);
+        ByteBuffer rb = ByteBuffer.wrap("-1.5".getBytes(ISO_8859_1))
+                .asReadOnlyBuffer();
+        check(DecimalToDouble.parseDouble(rb) == -1.5 && !rb.hasRemaining(),
+                "-1.5");
+
+        // Exponents that straddle the end of the window, at byte 64
+        for (int z = 56; z < 64; ++z) {
+            String e = "1." + "0".repeat(z) + "1E-16";
+            byte[] eb = (e + ",").getBytes(ISO_8859_1);
+            ByteBuffer db = ByteBuffer.allocateDirect(eb.length).put(eb)
+                    .flip();
+            ByteBuffer ob = ByteBuffer.wrap(eb).asReadOnlyBuffer();
+            for (ByteBuffer b : new ByteBuffer[] {db, ob}) {
+                check(DecimalToDouble.parseDouble(b) == Double.parseDouble(e)
+                        && b.position() == e.length(), e);
+            }
+        }
+
+        byte[] f = "3.4028235E38f-.e".getBytes(ISO_8859_1);
+        check(DecimalToDouble.parseFloat(f, 0, f.length, pos) ==
+                Float.MAX_VALUE && pos.getIndex() == 12, "3.4028235E38f");
+        check(DecimalToDouble.parseFloat(f, 0, 9, pos) == 3.4028235f &&
+                pos.getIndex() == 9, "3.4028235");
+        ByteBuffer bb = ByteBuffer.wrap(f, 13, 3);
+        for (int i = 0; i < 2; ++i) {
+            try {
+                if (i == 0) {
+                    DecimalToDouble.parseFloat(f, 13, 3, pos);
+                } else {
+                    DecimalToDouble.parseFloat(bb);
+                }
+                check(false, ".e");
+            } catch (NumberFormatException ex) {
+                check(pos.getIndex() == 9 && bb.position() == 13, ".e");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        testBytes();
+        testSyntax();
+        testExtremeValues();
+        testRoundTrip();
+        testRandomDigits();
+        testHalfway();
+    }
+
+}
@@ -21,6 +21,14 @@
 
 package math;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
 
 import static java.lang.Math.*;
@@ -35,6 +43,11 @@ public class DoubleToDecString {
 
     private static final boolean FAILURE_THROWS_EXCEPTION = true;
 
+    private static final ByteBuffer heapBuffer =
+            ByteBuffer.allocate(DoubleToDecimal.MAX_CHARS + 1);
+    private static final ByteBuffer directBuffer =
+            ByteBuffer.allocateDirect(DoubleToDecimal.MAX_CHARS + 1);
+
     private static void assertTrue(boolean ok, double v, String s) {
         if (ok) {
             return;
@@ -56,6 +69,75 @@ public class DoubleToDecString {
 //        String s = Double.toString(v);
         String s = DoubleToDecimal.toString(v);
         assertTrue(new DoubleToStringChecker(v, s).isOK(), v, s);
+        assertTrue(s.equals(toBytes(v)), v, s);
+        assertTrue(s.equals(appendTo(v)), v, s);
+        assertTrue(s.equals(toByteBuffer(v)), v, s);
+        assertTrue(splits(v, s), v, s);
+    }
+
+    private static final Decimal dec = new Decimal();
+
+    /*
+    Whether split() selects the same decimal that is rendered as s.
+     */
+    private static boolean splits(double v, String s) {
+        if (!DoubleToDecimal.split(v, dec)) {
+            return v != v || Math.abs(v) == Double.POSITIVE_INFINITY;
+        }
+        if (dec.isNegative() != s.startsWith("-")) {
+            return false;
+        }
+        long d = dec.significand();
+        if (d == 0) {
+            return v == 0 && dec.exponent() == 0;
+        }
+        BigDecimal b = BigDecimal.valueOf(dec.isNegative() ? -d : d,
+                -dec.exponent());
+        return d % 10 != 0 && b.compareTo(new BigDecimal(s)) == 0;
+    }
+
+    /*
+    The bytes around the rendering must be left unchanged, even though the
+    rendering writes ahead into the room of the destination.
+     */
+    private static String toBytes(double v) {
+        byte[] bytes = new byte[DoubleToDecimal.MAX_CHARS + 2];
+        Arrays.fill(bytes, (byte) '#');
+        int len = DoubleToDecimal.toBytes(v, bytes, 1);
+        for (int i = len + 1; i < bytes.length; ++i) {
+            if (bytes[i] != '#') {
+                return null;
+            }
+        }
+        if (bytes[0] != '#') {
+            return null;
+        }
+        return new String(bytes, 1, len, StandardCharsets.US_ASCII);
+    }
+
+    private static String toByteBuffer(double v) {
+        heapBuffer.clear().position(1);
+        directBuffer.clear().position(1);
+        int len = DoubleToDecimal.toBytes(v, heapBuffer);
+        if (DoubleToDecimal.toBytes(v, directBuffer) != len ||
+                heapBuffer.position() != len + 1 ||
+                !heapBuffer.flip().position(1).equals(
+                        directBuffer.flip().position(1))) {
+            return null;
+        }
+        return StandardCharsets.US_ASCII.decode(heapBuffer).toString();
+    }
+
+    private static String appendTo(double v) {
+        StringBuilder sb = DoubleToDecimal.appendTo(new StringBuilder("<"), v);
+        StringWriter w = new StringWriter();
+        try {
+            DoubleToDecimal.appendTo((Appendable) w, v);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        String s = sb.substring(1);
+        return s.equals(w.toString()) ? s : null;
     }
 
     private static void testExtremeValues() {
@@ -299,7 +381,84 @@ public class DoubleToDecString {
         }
     }
 
+    /*
+    Integers around 2^53, and decimals with up to 17 fraction digits
+    and up to 16 digits, which exercise the limits of the fast paths
+    in DoubleToDecimal.
+     */
+    private static void testShortDecimals() {
+        for (long i = (1L << 53) - 1_000; i <= (1L << 53) + 1_000; ++i) {
+            toDec(i);
+        }
+        Random r = new Random();
+        for (int j = 1; j <= 17; ++j) {
+            double p = parseDouble("1e" + j);
+            for (int i = 0; i < 10_000; ++i) {
+                toDec((r.nextLong() >>> 11 + r.nextInt(53)) / p);
+                toDec(r.nextInt(1 << 20) / p);
+            }
+        }
+    }
+
+    /*
+    Too little room must be reported without touching the destination.
+     */
+    private static void testOverflow() {
+        double v = -1.2345678901234567E-300;
+        int off = DoubleToDecimal.MAX_CHARS - 3;
+        byte[] bytes = new byte[DoubleToDecimal.MAX_CHARS];
+        try {
+            DoubleToDecimal.toBytes(v, bytes, off);
+            throw new RuntimeException("byte[] overflow not detected");
+        } catch (IndexOutOfBoundsException ex) {
+            if (bytes[off] != 0) {
+                throw new RuntimeException("byte[] changed on overflow");
+            }
+        }
+        ByteBuffer bb = ByteBuffer.allocateDirect(DoubleToDecimal.MAX_CHARS);
+        bb.position(off);
+        try {
+            DoubleToDecimal.toBytes(v, bb);
+            throw new RuntimeException("ByteBuffer overflow not detected");
+        } catch (BufferOverflowException ex) {
+            if (bb.position() != off) {
+                throw new RuntimeException("ByteBuffer changed on overflow");
+            }
+        }
+    }
+
+    /*
+    The bulk rendering of a slice must agree with the individual renderings.
+     */
+    private static void testBulk() {
+        Random r = new Random();
+        double[] a = new double[10_000];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = longBitsToDouble(r.nextLong());
+        }
+        a[1] = 0;
+        a[2] = -0.0f;
+        a[3] = 1 / a[1];
+        a[4] = -1 / a[1];
+        a[5] = a[1] / a[1];
+        for (int off = 0; off < 3; ++off) {
+            int len = a.length - 2 * off;
+            ByteBuilder bb = new ByteBuilder(1).append((byte) '[');
+            DoubleToDecimal.toBytes(a, off, len, ", ", bb).append((byte) ']');
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = off; i < off + len; ++i) {
+                sb.append(i != off ? ", " : "")
+                        .append(DoubleToDecimal.toString(a[i]));
+            }
+            if (!sb.append(']').toString().equals(bb.toString())) {
+                throw new RuntimeException("bulk rendering differs");
+            }
+        }
+    }
+
     public static void main(String[] args) {
+        testOverflow();
+        testBulk();
         testExtremeValues();
         testSomeAnomalies();
         testPowersOf2();
@@ -311,6 +470,7 @@ public class DoubleToDecString {
         testRandomUnit();
         testRandomMilli();
         testRandomMicro();
+        testShortDecimals();
     }
 
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class EcmaChecks {
+
+    /*
+    Renderings of x.toString() in JavaScript.
+     */
+    private static final Object[][] KNOWN = {
+            {0.0, "0"},
+            {-0.0, "0"},
+            {1.0, "1"},
+            {-1.0, "-1"},
+            {100.0, "100"},
+            {0.1, "0.1"},
+            {12.5, "12.5"},
+            {1e21, "1e+21"},
+            {1e20, "100000000000000000000"},
+            {123e18, "123000000000000000000"},
+            {1e-6, "0.000001"},
+            {1e-7, "1e-7"},
+            {1.5e-7, "1.5e-7"},
+            {0.000001234, "0.000001234"},
+            {-1e-7, "-1e-7"},
+            {1e22, "1e+22"},
+            {1e300, "1e+300"},
+            {0x1p70, "1.1805916207174113e+21"},
+            {0.3 + 0.6, "0.8999999999999999"},
+            {Double.MIN_VALUE, "5e-324"},
+            {2 * Double.MIN_VALUE, "1e-323"},
+            {3 * Double.MIN_VALUE, "1.5e-323"},
+            {10 * Double.MIN_VALUE, "5e-323"},
+            {Double.MIN_NORMAL, "2.2250738585072014e-308"},
+            {Double.MAX_VALUE, "1.7976931348623157e+308"},
+            {Double.NaN, "NaN"},
+            {Double.POSITIVE_INFINITY, "Infinity"},
+            {Double.NEGATIVE_INFINITY, "-Infinity"},
+    };
+
+    /*
+    The expected rendering of the decimal selected by
+    DoubleToDecimal.split(double, Decimal), as specified in
+    DoubleToDecimal.toEcmaString(double).
+     */
+    private static String expected(Decimal dec) {
+        String d = Long.toString(dec.significand());
+        int n = d.length();
+        int e = n + dec.exponent();
+        StringBuilder sb = new StringBuilder(dec.isNegative() ? "-" : "");
+        if (0 < e && e <= 21) {
+            if (e >= n) {
+                sb.append(d).append("0".repeat(e - n));
+            } else {
+                sb.append(d, 0, e).append('.').append(d, e, n);
+            }
+        } else if (-6 < e && e <= 0) {
+            sb.append("0.").append("0".repeat(-e)).append(d);
+        } else {
+            sb.append(d.charAt(0));
+            if (n > 1) {
+                sb.append('.').append(d, 1, n);
+            }
+            sb.append('e').append(e > 0 ? '+' : '-').append(Math.abs(e - 1));
+        }
+        return sb.toString();
+    }
+
+    private static void check(double v, String expected) {
+        String s = DoubleToDecimal.toEcmaString(v);
+        String sb = DoubleToDecimal.appendEcmaTo(new StringBuilder("x"), v)
+                .toString();
+        byte[] b = new byte[DoubleToDecimal.MAX_ECMA_CHARS];
+        Arrays.fill(b, (byte) '#');
+        int len = DoubleToDecimal.toEcmaBytes(v, b, 0);
+        if (!s.equals(expected) || !sb.equals("x" + s)
+                || !s.equals(new String(b, 0, len,
+                        StandardCharsets.ISO_8859_1))
+                || !untouched(b, len)) {
+            throw new RuntimeException("DoubleToDecimal renders " + v +
+                    " as " + s + " in ECMA format, rather than " + expected);
+        }
+    }
+
+    private static void testKnown() {
+        for (Object[] known : KNOWN) {
+            check((Double) known[0], (String) known[1]);
+        }
+    }
+
+    /*
+    Apart from the small subnormals, where ECMAScript prefers a shorter
+    decimal, the selected decimal is the one of split().
+     */
+    private static void testRandom() {
+        Random r = new Random();
+        Decimal dec = new Decimal();
+        for (int i = 0; i < 1_000_000; ++i) {
+            double v = Double.longBitsToDouble(r.nextLong());
+            if (i % 2 == 1) {
+                v = Math.scalb((double) r.nextLong(), r.nextInt(160) - 120);
+            }
+            if (Double.isFinite(v) && Math.abs(v) > 1e-320 && v != 0) {
+                DoubleToDecimal.split(v, dec);
+                check(v, expected(dec));
+            }
+        }
+    }
+
+    /*
+    The small subnormals render to the shortest decimals that round trip.
+     */
+    private static void testSubnormals() {
+        for (long bits = 1; bits < 1 << 12; ++bits) {
+            double v = Double.longBitsToDouble(bits);
+            String s = DoubleToDecimal.toEcmaString(v);
+            String js = DoubleToDecimal.toString(v);
+            int digits = s.indexOf('e') - (s.indexOf('.') < 0 ? 0 : 1);
+            int jdigits = js.indexOf('E') - 1;
+            if (Double.parseDouble(s) != v || digits > jdigits) {
+                throw new RuntimeException("DoubleToDecimal renders " + v +
+                        " as " + s + " in ECMA format");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        testKnown();
+        testRandom();
+        testSubnormals();
+    }
+
+    // Whether the bytes past the rendering are still those filled in.
+    private static boolean untouched(byte[] b, int len) {
+        for (int i = len; i < b.length; ++i) {
+            if (b[i] != '#') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static java.math.RoundingMode.HALF_EVEN;
+import static java.math.RoundingMode.HALF_UP;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class FixedFractionChecks {
+
+    private static final RoundingMode[] MODES = {HALF_EVEN, HALF_UP};
+
+    /*
+    The expected rendering, as specified in
+    DoubleToDecimal.toFixedString(double, int, RoundingMode), computed with
+    BigDecimal.
+     */
+    private static String expected(double v, int n, RoundingMode mode) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            return Double.toString(v);
+        }
+        String s = new BigDecimal(Math.abs(v)).setScale(n, mode)
+                .toPlainString();
+        return Double.doubleToRawLongBits(v) < 0 ? "-" + s : s;
+    }
+
+    private static void check(double v, int n, RoundingMode mode) {
+        String s = DoubleToDecimal.toFixedString(v, n, mode);
+        String sb = DoubleToDecimal.appendFixedTo(new StringBuilder("x"),
+                v, n, mode).toString();
+        byte[] b = new byte[s.length() + 2];
+        int len = DoubleToDecimal.toFixedBytes(v, b, 1, n, mode);
+        if (!s.equals(expected(v, n, mode)) || !sb.equals("x" + s)
+                || len != s.length()
+                || !s.equals(new String(b, 1, len, StandardCharsets.ISO_8859_1))
+                || b[0] != 0 || b[len + 1] != 0) {
+            throw new RuntimeException("DoubleToDecimal renders " + v +
+                    " with " + n + " fraction digits and " + mode +
+                    " as " + s);
+        }
+    }
+
+    private static void check(float v, int n, RoundingMode mode) {
+        String s = FloatToDecimal.toFixedString(v, n, mode);
+        String sb = FloatToDecimal.appendFixedTo(new StringBuilder("x"),
+                v, n, mode).toString();
+        byte[] b = new byte[s.length()];
+        int len = FloatToDecimal.toFixedBytes(v, b, 0, n, mode);
+        if (!s.equals(expected(v, n, mode)) || !sb.equals("x" + s)
+                || len != s.length()
+                || !s.equals(new String(b, StandardCharsets.ISO_8859_1))) {
+            throw new RuntimeException("FloatToDecimal renders " + v +
+                    " with " + n + " fraction digits and " + mode +
+                    " as " + s);
+        }
+    }
+
+    /*
+    Ties, carries into the integer part, the limits of the long integer
+    parts and the extremes.
+     */
+    private static void testSpecialValues() {
+        double[] vs = {
+                0, 1, 0.5, 1.5, 2.5, 0.125, 0.375, 1.005, 9.995, 99.5,
+                0.05, 0.001, 0.0049, 12345.678, 123456789.125,
+                0x1p52 + 0.5, 0x1p53, 0x1p62, 0x1p63 - 1024, 0x1p63,
+                0x1p64, 1e19, 1e20, 1e22, 1e23, 1e100, 0x1p1000,
+                Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE,
+                Double.POSITIVE_INFINITY, Double.NaN,
+        };
+        for (double v : vs) {
+            for (RoundingMode mode : MODES) {
+                for (int n = 0; n <= 17; ++n) {
+                    check(v, n, mode);
+                    check(-v, n, mode);
+                    check((float) v, n, mode);
+                    check((float) -v, n, mode);
+                }
+            }
+        }
+    }
+
+    private static void testRandom() {
+        Random r = new Random();
+        for (int i = 0; i < 100_000; ++i) {
+            RoundingMode mode = MODES[r.nextInt(MODES.length)];
+            int n = r.nextInt(18);
+            check(Double.longBitsToDouble(r.nextLong()), n, mode);
+            // Prices, often close to ties
+            check(r.nextInt(100_000_000) / 1000.0, n, mode);
+            check(r.nextInt(1 << 20) / 256.0, n, mode);
+            check(Double.longBitsToDouble(
+                    0x3F00_0000_0000_0000L + (r.nextLong() >>> 10)), n, mode);
+            check(Float.intBitsToFloat(r.nextInt()), n, mode);
+            check(r.nextInt(1_000_000) / 100f, n, mode);
+        }
+    }
+
+    private static void testArguments() {
+        for (int n : new int[] {-1, 18}) {
+            try {
+                DoubleToDecimal.toFixedString(1.0, n, HALF_EVEN);
+                throw new RuntimeException("fraction digits " + n +
+                        " accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        try {
+            FloatToDecimal.toFixedString(1.0f, 2, RoundingMode.FLOOR);
+            throw new RuntimeException("RoundingMode.FLOOR accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        byte[] b = new byte[4];
+        try {
+            DoubleToDecimal.toFixedBytes(12.5, b, 0, 2, HALF_EVEN);
+            throw new RuntimeException("overflow accepted");
+        } catch (IndexOutOfBoundsException ex) {
+            if (b[0] != 0) {
+                throw new RuntimeException("overflow changed the array");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        testArguments();
+        testSpecialValues();
+        testRandom();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static java.math.RoundingMode.HALF_EVEN;
+import static java.math.RoundingMode.HALF_UP;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class FixedPrecisionChecks {
+
+    private static final RoundingMode[] MODES = {HALF_EVEN, HALF_UP};
+
+    /*
+    The expected rendering, as specified in
+    DoubleToDecimal.toString(double, int, RoundingMode), computed with
+    BigDecimal.
+     */
+    private static String expected(double v, int n, RoundingMode mode) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            return Double.toString(v);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (Double.doubleToRawLongBits(v) < 0) {
+            sb.append('-');
+        }
+        if (v == 0) {
+            sb.append("0.");
+            for (int i = 1; i < Math.max(n, 2); ++i) {
+                sb.append('0');
+            }
+            return sb.toString();
+        }
+        BigDecimal r = new BigDecimal(Math.abs(v))
+                .round(new MathContext(n, mode));
+        if (r.precision() < n) {
+            r = r.setScale(r.scale() + n - r.precision());
+        }
+        String d = r.unscaledValue().toString();
+        int i = -r.scale();
+        int e = n + i - 1;
+        if (-3 <= e && e < 0) {
+            sb.append("0.");
+            for (int z = 0; z < -(n + i); ++z) {
+                sb.append('0');
+            }
+            sb.append(d);
+        } else if (0 <= e && e < 7) {
+            if (i >= 0) {
+                sb.append(d);
+                for (int z = 0; z < i; ++z) {
+                    sb.append('0');
+                }
+                sb.append(".0");
+            } else {
+                sb.append(d, 0, n + i).append('.').append(d.substring(n + i));
+            }
+        } else {
+            sb.append(d.charAt(0)).append('.')
+                    .append(n == 1 ? "0" : d.substring(1))
+                    .append('E').append(e);
+        }
+        return sb.toString();
+    }
+
+    private static void check(double v, int n, RoundingMode mode) {
+        String s = DoubleToDecimal.toString(v, n, mode);
+        String sb = DoubleToDecimal.appendTo(new StringBuilder("x"),
+                v, n, mode).toString();
+        if (!s.equals(expected(v, n, mode)) || !sb.equals("x" + s)) {
+            throw new RuntimeException("DoubleToDecimal renders " + v +
+                    " with precision " + n + " and " + mode + " as " + s);
+        }
+    }
+
+    private static void check(float v, int n, RoundingMode mode) {
+        String s = FloatToDecimal.toString(v, n, mode);
+        String sb = FloatToDecimal.appendTo(new StringBuilder("x"),
+                v, n, mode).toString();
+        if (!s.equals(expected(v, n, mode)) || !sb.equals("x" + s)) {
+            throw new RuntimeException("FloatToDecimal renders " + v +
+                    " with precision " + n + " and " + mode + " as " + s);
+        }
+    }
+
+    /*
+    Ties, carries to one more digit and the extremes.
+     */
+    private static void testSpecialValues() {
+        double[] vs = {
+                0, 1, 1.5, 2.5, 0.125, 9.5, 0.95, 9.6, 9.96, 99.5, 4.35,
+                0.1, 1e-5, 0.001, 0.00095, 12345, 123456789, 1e7, 9999999.5,
+                1e21, 1e22, 1e23, Double.MIN_VALUE, Double.MIN_NORMAL,
+                Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN,
+        };
+        for (double v : vs) {
+            for (RoundingMode mode : MODES) {
+                for (int n = 1; n <= 17; ++n) {
+                    check(v, n, mode);
+                    check(-v, n, mode);
+                }
+                for (int n = 1; n <= 9; ++n) {
+                    check((float) v, n, mode);
+                    check((float) -v, n, mode);
+                }
+            }
+        }
+    }
+
+    private static void testRandom() {
+        Random r = new Random();
+        for (int i = 0; i < 200_000; ++i) {
+            RoundingMode mode = MODES[r.nextInt(MODES.length)];
+            check(Double.longBitsToDouble(r.nextLong()),
+                    1 + r.nextInt(17), mode);
+            // Binary fractions with few digits, often ties
+            check(r.nextInt(1 << 20) / 256.0, 1 + r.nextInt(17), mode);
+            check(Double.longBitsToDouble(r.nextLong() >>> 12),
+                    1 + r.nextInt(17), mode);
+            check(Float.intBitsToFloat(r.nextInt()), 1 + r.nextInt(9), mode);
+            check(r.nextInt(1 << 20) / 64f, 1 + r.nextInt(9), mode);
+        }
+    }
+
+    private static void testArguments() {
+        int[][] ranges = {{0, 18}, {0, 10}};
+        for (int n : ranges[0]) {
+            try {
+                DoubleToDecimal.toString(1.0, n, HALF_EVEN);
+                throw new RuntimeException("precision " + n + " accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        for (int n : ranges[1]) {
+            try {
+                FloatToDecimal.toString(1.0f, n, HALF_EVEN);
+                throw new RuntimeException("precision " + n + " accepted");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+        try {
+            DoubleToDecimal.toString(1.0, 3, RoundingMode.UP);
+            throw new RuntimeException("RoundingMode.UP accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public static void main(String[] args) {
+        testArguments();
+        testSpecialValues();
+        testRandom();
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+A checker of the renderings of a 16 bit binary floating-point format,
+given by its precision, with the sign, exponent and fraction fields laid
+out as in IEEE 754. Both binary16 and bfloat16 are such formats.
+
+The renderings are compared to those of a straightforward, slow
+implementation of the specification, on exact BigDecimal arithmetic.
+There are only 2^16 values, so all are verified.
+ */
+abstract class Float16Checker {
+
+    // The name of the format.
+    private final String format;
+
+    // The precision in bits.
+    private final int p;
+
+    // Exponent width in bits.
+    private final int w;
+
+    Float16Checker(String format, int p) {
+        this.format = format;
+        this.p = p;
+        this.w = (Short.SIZE - 1) - (p - 1);
+    }
+
+    abstract String toString(short v);
+
+    abstract StringBuilder appendTo(StringBuilder sb, short v);
+
+    abstract int toBytes(short v, byte[] dst, int off);
+
+    abstract ByteBuilder toBytes(short[] a, int off, int len, String sep,
+            ByteBuilder dst);
+
+    abstract int maxChars();
+
+    /*
+    The rendering of the value with the given bits, as specified
+    in FloatToDecimal.toString(float), except that the decimals are those
+    that round to the value in this format.
+     */
+    private String expected(short bits) {
+        int bqMask = (1 << w) - 1;
+        int bq = bits >>> p - 1 & bqMask;
+        int c = bits & (1 << p - 1) - 1;
+        if (bq == bqMask) {
+            return c != 0 ? "NaN" : bits < 0 ? "-Infinity" : "Infinity";
+        }
+        String sign = bits < 0 ? "-" : "";
+        if (bq == 0 && c == 0) {
+            return sign + "0.0";
+        }
+        // Minimum value of the exponent: -(2^(w-1)) - p + 3.
+        int q = (-1 << w - 1) - p + 3;
+        int cMin = 1 << p - 1;
+        if (bq != 0) {
+            c |= cMin;
+            q += bq - 1;
+        }
+        BigDecimal v = new BigDecimal(Math.scalb((double) c, q));
+        BigDecimal ulp = new BigDecimal(Math.scalb(1.0, q));
+        BigDecimal half = ulp.divide(BigDecimal.valueOf(2));
+        BigDecimal lower = c == cMin && bq > 1
+                ? v.subtract(half.divide(BigDecimal.valueOf(2)))
+                : v.subtract(half);
+        BigDecimal upper = v.add(half);
+        boolean closed = (c & 0x1) == 0;
+
+        // The minimal length m of the decimals in Rv.
+        int m = 1;
+        while (!inRv(round(v, m, RoundingMode.FLOOR), lower, upper, closed)
+                && !inRv(round(v, m, RoundingMode.CEILING),
+                        lower, upper, closed)) {
+            ++m;
+        }
+
+        // Among those of length max(m, 2), select the closest, ties to even.
+        int n = Math.max(m, 2);
+        BigDecimal dn = round(v, n, RoundingMode.FLOOR);
+        BigDecimal up = round(v, n, RoundingMode.CEILING);
+        BigDecimal d;
+        if (!inRv(dn, lower, upper, closed)) {
+            d = up;
+        } else if (!inRv(up, lower, upper, closed)) {
+            d = dn;
+        } else {
+            int cmp = v.subtract(dn).compareTo(up.subtract(v));
+            d = cmp < 0 ? dn : cmp > 0 ? up
+                    : round(v, n, RoundingMode.HALF_EVEN);
+        }
+        return sign + format(d.stripTrailingZeros());
+    }
+
+    private static BigDecimal round(BigDecimal v, int n, RoundingMode rm) {
+        return v.round(new MathContext(n, rm));
+    }
+
+    private static boolean inRv(BigDecimal d, BigDecimal lower,
+            BigDecimal upper, boolean closed) {
+        int l = d.compareTo(lower);
+        int u = d.compareTo(upper);
+        return closed ? l >= 0 && u <= 0 : l > 0 && u < 0;
+    }
+
+    // Formats the positive d as specified by Float.toString(float).
+    private static String format(BigDecimal d) {
+        String s = d.unscaledValue().toString();
+        int n = s.length();
+        int e = n - d.scale();
+        if (-3 < e && e <= 7) {
+            if (e <= 0) {
+                return "0." + "0".repeat(-e) + s;
+            }
+            if (e >= n) {
+                return s + "0".repeat(e - n) + ".0";
+            }
+            return s.substring(0, e) + "." + s.substring(e);
+        }
+        return s.charAt(0) + "." + (n > 1 ? s.substring(1) : "0")
+                + "E" + (e - 1);
+    }
+
+    /*
+    The byte[] rendering is checked both in an array of exactly
+    maxChars() bytes and in a larger one, as a renderer might only write
+    directly into arrays with more room.
+     */
+    private void check(short v, String expected) {
+        String s = toString(v);
+        String sb = appendTo(new StringBuilder("x"), v).toString();
+        if (!s.equals(expected) || !sb.equals("x" + s)
+                || !bytesEqual(v, s, maxChars())
+                || !bytesEqual(v, s, maxChars() + 8)) {
+            throw new RuntimeException("the " + format + " 0x" +
+                    Integer.toHexString(v & 0xFFFF) + " is rendered as " +
+                    s + ", rather than " + expected);
+        }
+    }
+
+    /*
+    Whether v is rendered as s in an array of the given length, leaving
+    the bytes past the rendering untouched.
+     */
+    private boolean bytesEqual(short v, String s, int length) {
+        byte[] b = new byte[length];
+        Arrays.fill(b, (byte) '#');
+        int len = toBytes(v, b, 0);
+        for (int i = len; i < b.length; ++i) {
+            if (b[i] != '#') {
+                return false;
+            }
+        }
+        return s.equals(new String(b, 0, len, StandardCharsets.ISO_8859_1));
+    }
+
+    /*
+    Checks the pairs of hexadecimal bits and expected renderings in known,
+    then all values, one by one and as an array.
+     */
+    void test(String[][] known) {
+        for (String[] k : known) {
+            check((short) Integer.parseInt(k[0], 16), k[1]);
+        }
+        short[] a = new short[1 << 16];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = (short) i;
+            String e = expected(a[i]);
+            check(a[i], e);
+            if (i != 0) {
+                sb.append(' ');
+            }
+            sb.append(e);
+        }
+        String s = toBytes(a, 0, a.length, " ", new ByteBuilder())
+                .toString();
+        if (!s.equals(sb.toString())) {
+            throw new RuntimeException("the array of all " + format +
+                    " values is rendered incorrectly");
+        }
+    }
+
+}
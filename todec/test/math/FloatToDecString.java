@@ -21,6 +21,14 @@
 
 package math;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
 
 import static java.lang.Float.*;
@@ -33,6 +41,11 @@ public class FloatToDecString {
 
     private static final boolean FAILURE_THROWS_EXCEPTION = true;
 
+    private static final ByteBuffer heapBuffer =
+            ByteBuffer.allocate(FloatToDecimal.MAX_CHARS + 1);
+    private static final ByteBuffer directBuffer =
+            ByteBuffer.allocateDirect(FloatToDecimal.MAX_CHARS + 1);
+
     private static void assertTrue(boolean ok, float v, String s) {
         if (ok) {
             return;
@@ -54,6 +67,75 @@ public class FloatToDecString {
 //        String s = Float.toString(v);
         String s = FloatToDecimal.toString(v);
         assertTrue(new FloatToStringChecker(v, s).isOK(), v, s);
+        assertTrue(s.equals(toBytes(v)), v, s);
+        assertTrue(s.equals(appendTo(v)), v, s);
+        assertTrue(s.equals(toByteBuffer(v)), v, s);
+        assertTrue(splits(v, s), v, s);
+    }
+
+    private static final Decimal dec = new Decimal();
+
+    /*
+    Whether split() selects the same decimal that is rendered as s.
+     */
+    private static boolean splits(float v, String s) {
+        if (!FloatToDecimal.split(v, dec)) {
+            return v != v || Math.abs(v) == Float.POSITIVE_INFINITY;
+        }
+        if (dec.isNegative() != s.startsWith("-")) {
+            return false;
+        }
+        long d = dec.significand();
+        if (d == 0) {
+            return v == 0 && dec.exponent() == 0;
+        }
+        BigDecimal b = BigDecimal.valueOf(dec.isNegative() ? -d : d,
+                -dec.exponent());
+        return d % 10 != 0 && b.compareTo(new BigDecimal(s)) == 0;
+    }
+
+    /*
+    The bytes around the rendering must be left unchanged, even though the
+    rendering writes ahead into the room of the destination.
+     */
+    private static String toBytes(float v) {
+        byte[] bytes = new byte[FloatToDecimal.MAX_CHARS + 2];
+        Arrays.fill(bytes, (byte) '#');
+        int len = FloatToDecimal.toBytes(v, bytes, 1);
+        for (int i = len + 1; i < bytes.length; ++i) {
+            if (bytes[i] != '#') {
+                return null;
+            }
+        }
+        if (bytes[0] != '#') {
+            return null;
+        }
+        return new String(bytes, 1, len, StandardCharsets.US_ASCII);
+    }
+
+    private static String toByteBuffer(float v) {
+        heapBuffer.clear().position(1);
+        directBuffer.clear().position(1);
+        int len = FloatToDecimal.toBytes(v, heapBuffer);
+        if (FloatToDecimal.toBytes(v, directBuffer) != len ||
+                heapBuffer.position() != len + 1 ||
+                !heapBuffer.flip().position(1).equals(
+                        directBuffer.flip().position(1))) {
+            return null;
+        }
+        return StandardCharsets.US_ASCII.decode(heapBuffer).toString();
+    }
+
+    private static String appendTo(float v) {
+        StringBuilder sb = FloatToDecimal.appendTo(new StringBuilder("<"), v);
+        StringWriter w = new StringWriter();
+        try {
+            FloatToDecimal.appendTo((Appendable) w, v);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        String s = sb.substring(1);
+        return s.equals(w.toString()) ? s : null;
     }
 
     /*
@@ -131,7 +213,9 @@ public class FloatToDecString {
     }
 
     /*
-    All, really all, possible floats. Takes between 90 and 120 minutes.
+    All, really all, possible floats. Takes between 90 and 120 minutes
+    on a single core. FloatToDecVerifier shards the work across all cores
+    or JVMs, and can resume an interrupted run.
      */
     private static void testAll() {
         int bits = Integer.MIN_VALUE;
@@ -141,8 +225,66 @@ public class FloatToDecString {
         toDec(Float.intBitsToFloat(bits));
     }
 
+    /*
+    Too little room must be reported without touching the destination.
+     */
+    private static void testOverflow() {
+        float v = -1.2345678E-30F;
+        int off = FloatToDecimal.MAX_CHARS - 3;
+        byte[] bytes = new byte[FloatToDecimal.MAX_CHARS];
+        try {
+            FloatToDecimal.toBytes(v, bytes, off);
+            throw new RuntimeException("byte[] overflow not detected");
+        } catch (IndexOutOfBoundsException ex) {
+            if (bytes[off] != 0) {
+                throw new RuntimeException("byte[] changed on overflow");
+            }
+        }
+        ByteBuffer bb = ByteBuffer.allocateDirect(FloatToDecimal.MAX_CHARS);
+        bb.position(off);
+        try {
+            FloatToDecimal.toBytes(v, bb);
+            throw new RuntimeException("ByteBuffer overflow not detected");
+        } catch (BufferOverflowException ex) {
+            if (bb.position() != off) {
+                throw new RuntimeException("ByteBuffer changed on overflow");
+            }
+        }
+    }
+
+    /*
+    The bulk rendering of a slice must agree with the individual renderings.
+     */
+    private static void testBulk() {
+        Random r = new Random();
+        float[] a = new float[10_000];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = intBitsToFloat(r.nextInt());
+        }
+        a[1] = 0;
+        a[2] = -0.0f;
+        a[3] = 1 / a[1];
+        a[4] = -1 / a[1];
+        a[5] = a[1] / a[1];
+        for (int off = 0; off < 3; ++off) {
+            int len = a.length - 2 * off;
+            ByteBuilder bb = new ByteBuilder(1).append((byte) '[');
+            FloatToDecimal.toBytes(a, off, len, ", ", bb).append((byte) ']');
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = off; i < off + len; ++i) {
+                sb.append(i != off ? ", " : "")
+                        .append(FloatToDecimal.toString(a[i]));
+            }
+            if (!sb.append(']').toString().equals(bb.toString())) {
+                throw new RuntimeException("bulk rendering differs");
+            }
+        }
+    }
+
     public static void main(String[] args) {
 //        testAll();
+        testOverflow();
+        testBulk();
         testExtremeValues();
         testPowersOf2();
         testPowersOf10();
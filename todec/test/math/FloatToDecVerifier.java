@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Float.intBitsToFloat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+/*
+Verifies the renderings of all the 2^32 float bit patterns with
+FloatToStringChecker, on all cores and optionally in several JVMs.
+
+The bit patterns are split into SHARDS shards of consecutive patterns.
+Each completed shard is recorded in a checkpoint file, together with
+its failing patterns, if any. A rerun with the same checkpoint file
+skips the recorded shards, so an interrupted run resumes where it was.
+
+    java math.FloatToDecVerifier [ options ]
+
+    --threads <t>       worker threads, the number of cores by default
+    --process <i>/<n>   verify only the shards s with s % n = i
+    --fork <n>          run n child JVMs, each with --process i/n and
+                        a share of the threads, and collect their results
+    --shards <a>-<b>    verify only the shards in [a, b)
+    --checkpoint <f>    the checkpoint file, by default
+                        FloatToDecVerifier.ckpt or FloatToDecVerifier.<i>.ckpt
+
+Progress and throughput are reported periodically. At the end, the
+failing bit patterns are listed in increasing unsigned order and the
+exit status is 1 if there are any.
+ */
+public class FloatToDecVerifier {
+
+    static final int SHARD_BITS = 20;
+    static final int SHARDS = 1 << Integer.SIZE - SHARD_BITS;
+
+    private static final int REPORT_SECONDS = 10;
+
+    private static final String DONE = "done";
+    private static final String FAIL = "fail";
+
+    private final int threads;
+    private final int process;
+    private final int processes;
+    private final int fromShard;
+    private final int toShard;
+    private final Path checkpoint;
+
+    private final BitSet done = new BitSet(SHARDS);
+
+    // The failures, keyed by their bits read as unsigned.
+    private final Map<Long, String> failures = new TreeMap<>();
+
+    private final AtomicInteger verified = new AtomicInteger();
+    private BufferedWriter out;
+
+    // Whether the checkpoint file does not end with a complete line.
+    private boolean truncated;
+
+    FloatToDecVerifier(int threads, int process, int processes,
+            int fromShard, int toShard, Path checkpoint) {
+        this.threads = threads;
+        this.process = process;
+        this.processes = processes;
+        this.fromShard = fromShard;
+        this.toShard = toShard;
+        this.checkpoint = checkpoint;
+    }
+
+    /*
+    Verifies the shards of this process that are not yet recorded in the
+    checkpoint file, and returns the number of failures of all the shards
+    of this process, including those recorded in earlier runs.
+     */
+    int run() throws IOException, InterruptedException {
+        readCheckpoint();
+        List<Integer> todo = new ArrayList<>();
+        int total = 0;
+        for (int s = fromShard; s < toShard; ++s) {
+            if (s % processes == process) {
+                ++total;
+                if (!done.get(s)) {
+                    todo.add(s);
+                }
+            }
+        }
+        if (todo.size() < total) {
+            report("resuming with " + (total - todo.size()) + "/" + total +
+                    " shards already verified, " + failures.size() +
+                    " failures");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        out = Files.newBufferedWriter(checkpoint, US_ASCII, CREATE, APPEND);
+        if (truncated) {
+            out.write('\n');
+        }
+        try {
+            for (int s : todo) {
+                pool.execute(() -> verify(s));
+            }
+            pool.shutdown();
+            long begin = System.nanoTime();
+            while (!pool.awaitTermination(REPORT_SECONDS, TimeUnit.SECONDS)) {
+                progress(begin, todo.size());
+            }
+            progress(begin, todo.size());
+        } finally {
+            pool.shutdownNow();
+            out.close();
+        }
+        for (Map.Entry<Long, String> f : failures.entrySet()) {
+            report(FAIL + " " + hex(f.getKey()) + " " + f.getValue());
+        }
+        int missing = todo.size() - verified.get();
+        if (missing > 0) {
+            report(missing + " shards could not be verified, rerun to resume");
+        }
+        report(failures.isEmpty() && missing == 0
+                ? "all " + total + " shards verified, no failures"
+                : failures.size() + " failures");
+        return failures.size() + missing;
+    }
+
+    private void verify(int shard) {
+        Map<Long, String> failed = new TreeMap<>();
+        int bits = shard << SHARD_BITS;
+        for (int i = 0; i < 1 << SHARD_BITS; ++i, ++bits) {
+            float v = intBitsToFloat(bits);
+            String s;
+            try {
+                s = FloatToDecimal.toString(v);
+                if (new FloatToStringChecker(v, s).isOK()) {
+                    continue;
+                }
+            } catch (RuntimeException ex) {
+                s = ex.toString();
+            }
+            failed.put(Integer.toUnsignedLong(bits), s);
+        }
+        record(shard, failed);
+        verified.incrementAndGet();
+    }
+
+    /*
+    A shard is recorded with its failures in one flushed write, so that
+    an interrupted run never leaves failures without their shard.
+     */
+    private synchronized void record(int shard, Map<Long, String> failed) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, String> f : failed.entrySet()) {
+            sb.append(FAIL).append(' ').append(hex(f.getKey()))
+                    .append(' ').append(f.getValue()).append('\n');
+        }
+        sb.append(DONE).append(' ').append(shard).append('\n');
+        try {
+            out.write(sb.toString());
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        failures.putAll(failed);
+        done.set(shard);
+    }
+
+    /*
+    Failures are only taken into account once their shard is recorded.
+    A truncated last line, as left by a crash, is ignored, and later
+    terminated before appending.
+     */
+    private void readCheckpoint() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return;
+        }
+        String content = Files.readString(checkpoint, US_ASCII);
+        truncated = !content.isEmpty() && !content.endsWith("\n");
+        Map<Long, String> pending = new TreeMap<>();
+        for (String line : content.split("\n")) {
+            String[] fields = line.split(" ", 3);
+            try {
+                if (fields[0].equals(FAIL) && fields.length == 3) {
+                    pending.put(Long.parseLong(fields[1].substring(2), 16),
+                            fields[2]);
+                } else if (fields[0].equals(DONE) && fields.length == 2) {
+                    int shard = Integer.parseInt(fields[1]);
+                    long from = (long) shard << SHARD_BITS;
+                    long to = from + (1L << SHARD_BITS);
+                    for (Map.Entry<Long, String> f : pending.entrySet()) {
+                        if (from <= f.getKey() && f.getKey() < to) {
+                            failures.put(f.getKey(), f.getValue());
+                        }
+                    }
+                    pending.clear();
+                    done.set(shard);
+                }
+            } catch (RuntimeException ex) {
+                // a truncated line
+            }
+        }
+    }
+
+    private synchronized void progress(long begin, int shards) {
+        int n = verified.get();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        double rate = n * (double) (1 << SHARD_BITS) / seconds;
+        long eta = n == 0 ? -1 : Math.round(seconds * (shards - n) / n);
+        report(String.format("%d/%d shards (%.1f%%), %.2fM floats/s, " +
+                        "eta %s, %d failures",
+                n, shards, shards == 0 ? 100.0 : 100.0 * n / shards,
+                rate / 1e6, eta < 0 ? "?" : duration(eta), failures.size()));
+    }
+
+    private void report(String message) {
+        System.out.println((processes > 1 ? "[" + process + "] " : "") +
+                message);
+        System.out.flush();
+    }
+
+    private static String hex(long bits) {
+        return String.format("0x%08x", bits);
+    }
+
+    private static String duration(long seconds) {
+        return String.format("%d:%02d:%02d",
+                seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /*
+    Runs n child JVMs, each verifying the shards s with s % n = i,
+    and returns the total number of failures.
+     */
+    private static int fork(int n, int threads, String shards,
+            String checkpoint) throws IOException, InterruptedException {
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            List<String> cmd = new ArrayList<>(List.of(
+                    Paths.get(System.getProperty("java.home"), "bin", "java")
+                            .toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    FloatToDecVerifier.class.getName(),
+                    "--process", i + "/" + n,
+                    "--threads", Integer.toString(Math.max(1, threads / n))));
+            if (shards != null) {
+                cmd.addAll(List.of("--shards", shards));
+            }
+            if (checkpoint != null) {
+                cmd.addAll(List.of("--checkpoint", checkpoint + "." + i));
+            }
+            children.add(new ProcessBuilder(cmd).inheritIO().start());
+        }
+        int failed = 0;
+        for (Process child : children) {
+            failed += child.waitFor() != 0 ? 1 : 0;
+        }
+        System.out.println(failed == 0
+                ? "all processes verified with no failures"
+                : failed + " processes reported failures");
+        return failed;
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: java math.FloatToDecVerifier" +
+                " [--threads <t>] [--process <i>/<n> | --fork <n>]" +
+                " [--shards <a>-<b>] [--checkpoint <file>]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int process = 0;
+        int processes = 1;
+        int forks = 0;
+        int fromShard = 0;
+        int toShard = SHARDS;
+        String shards = null;
+        String checkpoint = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                usage("missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--process":
+                        String[] in = value.split("/");
+                        process = Integer.parseInt(in[0]);
+                        processes = Integer.parseInt(in[1]);
+                        break;
+                    case "--fork":
+                        forks = Integer.parseInt(value);
+                        break;
+                    case "--shards":
+                        String[] ab = value.split("-");
+                        fromShard = Integer.parseInt(ab[0]);
+                        toShard = Integer.parseInt(ab[1]);
+                        shards = value;
+                        break;
+                    case "--checkpoint":
+                        checkpoint = value;
+                        break;
+                    default:
+                        usage("unknown option " + args[i]);
+                }
+            } catch (RuntimeException ex) {
+                usage("invalid value " + value + " for " + args[i]);
+            }
+        }
+        if (threads < 1 || processes < 1 || process < 0 ||
+                process >= processes || forks < 0 ||
+                fromShard < 0 || fromShard > toShard || toShard > SHARDS) {
+            usage("invalid options");
+        }
+        if (forks > 0) {
+            System.exit(fork(forks, threads, shards, checkpoint) == 0 ? 0 : 1);
+        }
+        Path path = Paths.get(checkpoint != null
+                ? checkpoint
+                : processes > 1
+                    ? "FloatToDecVerifier." + process + ".ckpt"
+                    : "FloatToDecVerifier.ckpt");
+        int failed = new FloatToDecVerifier(threads, process, processes,
+                fromShard, toShard, path).run();
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+}
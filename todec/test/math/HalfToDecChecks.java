@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class HalfToDecChecks extends Float16Checker {
+
+    private static final String[][] KNOWN = {
+            {"0000", "0.0"},
+            {"8000", "-0.0"},
+            {"3c00", "1.0"},
+            {"bc00", "-1.0"},
+            {"2e66", "0.1"},
+            {"3555", "0.3333"},
+            {"7bff", "65500.0"},
+            {"0001", "6.0E-8"},
+            {"0002", "1.2E-7"},
+            {"0400", "6.104E-5"},
+            {"1c00", "0.003906"},
+            {"7c00", "Infinity"},
+            {"fc00", "-Infinity"},
+            {"7e00", "NaN"},
+    };
+
+    private HalfToDecChecks() {
+        super("binary16", 11);
+    }
+
+    @Override
+    String toString(short v) {
+        return HalfToDecimal.toString(v);
+    }
+
+    @Override
+    StringBuilder appendTo(StringBuilder sb, short v) {
+        return HalfToDecimal.appendTo(sb, v);
+    }
+
+    @Override
+    int toBytes(short v, byte[] dst, int off) {
+        return HalfToDecimal.toBytes(v, dst, off);
+    }
+
+    @Override
+    ByteBuilder toBytes(short[] a, int off, int len, String sep,
+            ByteBuilder dst) {
+        return HalfToDecimal.toBytes(a, off, len, sep, dst);
+    }
+
+    @Override
+    int maxChars() {
+        return HalfToDecimal.MAX_CHARS;
+    }
+
+    public static void main(String[] args) {
+        new HalfToDecChecks().test(KNOWN);
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+ * @test
+ * @run main/othervm -Dmath.pathCounters=true math.JfrEventsChecks
+ * @author Raffaello Giulietti
+ */
+public class JfrEventsChecks {
+
+    private static final String BULK = "math.BulkToDecimal";
+    private static final String SAMPLE = "math.ToDecimalSample";
+
+    private static void check(boolean claim, String what) {
+        if (!claim) {
+            throw new RuntimeException("JFR events: " + what);
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable r) throws Exception {
+        Path file = Files.createTempFile("todec", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(BULK).withThreshold(java.time.Duration.ZERO);
+            recording.enable(SAMPLE).withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            r.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void testBulk() throws Exception {
+        double[] d = {1.0, 0.5, -0.0, Double.NaN, 123e-9};
+        float[] f = {1.0f, 2.5f};
+        short[] h = {0x3C00, 0x7C00, (short) 0x8000};
+        ByteBuilder bb = new ByteBuilder();
+        List<RecordedEvent> events = record(() -> {
+            DoubleToDecimal.toBytes(d, 0, d.length, ",", bb.clear());
+            DoubleToDecimal.toJsonBytes(d, 1, 3, ",", new ByteBuilder());
+            FloatToDecimal.toBytes(f, 0, f.length, ", ", bb);
+            HalfToDecimal.toBytes(h, 0, h.length, " ", new ByteBuilder());
+            BFloat16ToDecimal.toBytes(h, 1, 2, " ", new ByteBuilder());
+        });
+        String[][] expected = {
+                {"double", "java", "5", "24"},
+                {"double", "json", "3", "11"},
+                {"float", "java", "2", "8"},
+                {"binary16", "java", "3", "17"},
+                {"bfloat16", "java", "2", "12"},
+        };
+        int i = 0;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals(BULK)) {
+                check(i < expected.length, "too many bulk events");
+                String[] x = expected[i++];
+                check(e.getString("type").equals(x[0])
+                        && e.getString("format").equals(x[1])
+                        && e.getInt("count") == Integer.parseInt(x[2])
+                        && e.getLong("bytes") == Long.parseLong(x[3])
+                        && !e.getDuration().isNegative(),
+                        "wrong bulk event " + e);
+                /*
+                When counting, the path mix of the first event accounts
+                for its 3 non-zero, finite values.
+                 */
+                check(!PathCounters.ENABLED || i != 1
+                        || e.getLong("plainChars")
+                        + e.getLong("leadingZeroesChars")
+                        + e.getLong("exponentChars") == 3,
+                        "wrong path mix " + e);
+            }
+        }
+        check(i == expected.length, "missing bulk events");
+    }
+
+    /*
+    The path mix of each event of a parallel rendering accounts for the
+    values of its own chunk only, even while other threads are rendering.
+     */
+    private static void testParallelPathMix() throws Exception {
+        if (!PathCounters.ENABLED) {
+            return;
+        }
+        double[] d = new double[1 << 17];
+        for (int i = 0; i < d.length; ++i) {
+            d[i] = i + 0.5;
+        }
+        List<RecordedEvent> events = record(() -> ParallelToDecimal
+                .toBytes(d, 0, d.length, ",", new ByteBuilder()));
+        long count = 0;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals(BULK)) {
+                check(e.getLong("plainChars")
+                        + e.getLong("leadingZeroesChars")
+                        + e.getLong("exponentChars") == e.getInt("count"),
+                        "wrong path mix of chunk " + e);
+                count += e.getInt("count");
+            }
+        }
+        check(count == d.length, "missing chunk events");
+    }
+
+    private static void testSample() throws Exception {
+        int interval = ToDecimalSampleEvent.getSampleInterval();
+        ToDecimalSampleEvent.setSampleInterval(1);
+        List<RecordedEvent> events;
+        try {
+            events = record(() -> {
+                DoubleToDecimal.toString(0.1);
+                DoubleToDecimal.toBytes(-2.5e-10, new byte[30], 3);
+                FloatToDecimal.toString(1e10f);
+            });
+        } finally {
+            ToDecimalSampleEvent.setSampleInterval(interval);
+        }
+        Object[][] expected = {
+                {"double", 0.1, 3},
+                {"double", -2.5e-10, 8},
+                {"float", (double) 1e10f, 6},
+        };
+        int i = 0;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals(SAMPLE)) {
+                check(i < expected.length, "too many sample events");
+                Object[] x = expected[i++];
+                check(e.getString("type").equals(x[0])
+                        && e.getDouble("value") == (double) x[1]
+                        && e.getInt("length") == (int) x[2],
+                        "wrong sample event " + e);
+            }
+        }
+        check(i == expected.length, "missing sample events");
+    }
+
+    private static void testSampleInterval() {
+        try {
+            ToDecimalSampleEvent.setSampleInterval(0);
+            check(false, "accepts a sample interval of 0");
+        } catch (IllegalArgumentException expected) {
+            check(ToDecimalSampleEvent.getSampleInterval() > 0,
+                    "changes the sample interval on failure");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        testBulk();
+        testParallelPathMix();
+        testSample();
+        testSampleInterval();
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class JsonChecks {
+
+    // The number production of RFC 8259.
+    private static final Pattern NUMBER = Pattern.compile(
+            "-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+
+    private static final String[][] KNOWN = {
+            {"0", "0"},
+            {"-0", "-0"},
+            {"1", "1"},
+            {"100", "100"},
+            {"1000", "1e3"},
+            {"10000", "1e4"},
+            {"1e7", "1e7"},
+            {"12.5", "12.5"},
+            {"0.01", "0.01"},
+            {"0.015", "0.015"},
+            {"0.001", "1e-3"},
+            {"1e-4", "1e-4"},
+            {"0.0012", "12e-4"},
+            {"1.23e-7", "123e-9"},
+            {"123000", "123e3"},
+            {"1230000", "123e4"},
+            {"1.7976931348623157e308", "17976931348623157e292"},
+            {"1.2345678901234568e-5", "1.2345678901234568e-5"},
+            {"4.9e-324", "49e-325"},
+            {"1e23", "1e23"},
+            {"-2.5", "-2.5"},
+            {"NaN", "null"},
+            {"Infinity", "null"},
+            {"-Infinity", "null"},
+    };
+
+    /*
+    The expected rendering of the decimal selected by
+    DoubleToDecimal.split(double, Decimal), as specified in
+    DoubleToDecimal.toJsonString(double).
+     */
+    private static String expected(double v, Decimal dec) {
+        if (!Double.isFinite(v)) {
+            return "null";
+        }
+        String sign = dec.isNegative() ? "-" : "";
+        if (v == 0) {
+            return sign + "0";
+        }
+        String d = Long.toString(dec.significand());
+        int n = d.length();
+        int i = dec.exponent();
+        int e = n + i;
+        String plain;
+        if (i >= 0) {
+            plain = d + "0".repeat(i);
+        } else if (e > 0) {
+            plain = d.substring(0, e) + "." + d.substring(e);
+        } else {
+            plain = "0." + "0".repeat(-e) + d;
+        }
+        String integer = d + "e" + i;
+        String point = (n > 1 ? d.charAt(0) + "." + d.substring(1) : d)
+                + "e" + (e - 1);
+        String shortest = plain;
+        if (point.length() < shortest.length()) {
+            shortest = point;
+        }
+        if (integer.length() < shortest.length()) {
+            shortest = integer;
+        }
+        return sign + shortest;
+    }
+
+    private static void check(double v, String expected) {
+        String s = DoubleToDecimal.toJsonString(v);
+        String sb = DoubleToDecimal.appendJsonTo(new StringBuilder("x"), v)
+                .toString();
+        byte[] b = new byte[DoubleToDecimal.MAX_CHARS];
+        Arrays.fill(b, (byte) '#');
+        int len = DoubleToDecimal.toJsonBytes(v, b, 0);
+        if (!s.equals(expected) || !sb.equals("x" + s)
+                || !s.equals(new String(b, 0, len,
+                        StandardCharsets.ISO_8859_1))
+                || !untouched(b, len)
+                || Double.isFinite(v) && (!NUMBER.matcher(s).matches()
+                        || Double.parseDouble(s) != v)) {
+            throw new RuntimeException("DoubleToDecimal renders " + v +
+                    " as " + s + " in JSON format, rather than " + expected);
+        }
+    }
+
+    private static void testKnown() {
+        for (String[] known : KNOWN) {
+            check(Double.parseDouble(known[0]), known[1]);
+        }
+    }
+
+    private static void testRandom() {
+        Random r = new Random();
+        Decimal dec = new Decimal();
+        for (int i = 0; i < 1_000_000; ++i) {
+            double v;
+            switch (i % 4) {
+                case 0:
+                    v = Double.longBitsToDouble(r.nextLong());
+                    break;
+                case 1:
+                    v = r.nextInt() / 1e3;
+                    break;
+                case 2:
+                    v = r.nextInt(1000) * Math.pow(10, r.nextInt(40) - 20);
+                    break;
+                default:
+                    v = Math.scalb((double) r.nextLong(),
+                            r.nextInt(160) - 120);
+            }
+            DoubleToDecimal.split(v, dec);
+            check(v, expected(v, dec));
+        }
+    }
+
+    private static void testBulk() {
+        double[] a = {1e7, 0.5, -0.0, Double.NaN, 123e-9};
+        ByteBuilder bb = new ByteBuilder();
+        DoubleToDecimal.toJsonBytes(a, 0, a.length, ",", bb);
+        String s = bb.toString();
+        if (!s.equals("1e7,0.5,-0,null,123e-9")) {
+            throw new RuntimeException("DoubleToDecimal renders the array " +
+                    "as " + s + " in JSON format");
+        }
+    }
+
+    public static void main(String[] args) {
+        testKnown();
+        testRandom();
+        testBulk();
+    }
+
+    // Whether the bytes past the rendering are still those filled in.
+    private static boolean untouched(byte[] b, int len) {
+        for (int i = len; i < b.length; ++i) {
+            if (b[i] != '#') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
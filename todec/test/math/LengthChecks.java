@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.util.Random;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class LengthChecks {
+
+    private static final int N = 1_000_000;
+
+    private static void checkDouble(double v) {
+        int expected = DoubleToDecimal.toString(v).length();
+        int actual = DoubleToDecimal.length(v);
+        if (actual != expected) {
+            throw new RuntimeException("DoubleToDecimal predicts " + actual +
+                    " characters for " + v + ", rather than " + expected);
+        }
+    }
+
+    private static void checkFloat(float v) {
+        int expected = FloatToDecimal.toString(v).length();
+        int actual = FloatToDecimal.length(v);
+        if (actual != expected) {
+            throw new RuntimeException("FloatToDecimal predicts " + actual +
+                    " characters for " + v + ", rather than " + expected);
+        }
+    }
+
+    private static void testSpecial() {
+        double[] d = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE,
+                Double.MIN_NORMAL, 1.0, 1e7, 1e-3, 9.999999e6, 1e-4, 0.1,
+                1234567.0, 12345678.0, 1.0E-100, -1.0E100, 2.5e-323};
+        for (double v : d) {
+            checkDouble(v);
+        }
+        float[] f = {0.0f, -0.0f, Float.NaN, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MAX_VALUE,
+                Float.MIN_NORMAL, 1.0f, 1e7f, 1e-3f, 1e-4f, 0.1f, 3e-45f};
+        for (float v : f) {
+            checkFloat(v);
+        }
+    }
+
+    /*
+    The distributions cover each format, and the boundaries of the plain
+    formats.
+     */
+    private static void testRandom() {
+        Random r = new Random();
+        for (int i = 0; i < N; ++i) {
+            double v;
+            switch (i % 4) {
+                case 0:
+                    v = Double.longBitsToDouble(r.nextLong());
+                    break;
+                case 1:
+                    v = r.nextInt() / 1e3;
+                    break;
+                case 2:
+                    v = r.nextInt(1000) * Math.pow(10, r.nextInt(20) - 10);
+                    break;
+                default:
+                    v = Math.scalb((double) r.nextLong(),
+                            r.nextInt(160) - 120);
+            }
+            checkDouble(v);
+            checkFloat((float) v);
+            checkFloat(Float.intBitsToFloat(r.nextInt()));
+        }
+    }
+
+    private static void testBulk() {
+        Random r = new Random();
+        double[] d = new double[1_000];
+        float[] f = new float[d.length];
+        for (int i = 0; i < d.length; ++i) {
+            d[i] = Double.longBitsToDouble(r.nextLong());
+            f[i] = Float.intBitsToFloat(r.nextInt());
+        }
+        int off = 10;
+        int len = d.length - 2 * off;
+        String sep = ", ";
+        long sepLen = (long) sep.length() * (len - 1);
+        if (DoubleToDecimal.length(d, off, len) + sepLen !=
+                DoubleToDecimal.toBytes(d, off, len, sep,
+                        new ByteBuilder()).length()
+                || FloatToDecimal.length(f, off, len) + sepLen !=
+                FloatToDecimal.toBytes(f, off, len, sep,
+                        new ByteBuilder()).length()
+                || DoubleToDecimal.length(d, off, 0) != 0) {
+            throw new RuntimeException("the bulk lengths are not the sums " +
+                    "of the lengths");
+        }
+    }
+
+    public static void main(String[] args) {
+        testSpecial();
+        testRandom();
+        testBulk();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.intBitsToFloat;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class ParallelToDecString {
+
+    private static final int N = 1_500_003;
+
+    private static void check(boolean claim, String what) {
+        if (!claim) {
+            throw new RuntimeException(what + " differs from sequential");
+        }
+    }
+
+    /*
+    Slices of several lengths, around the thresholds for going parallel,
+    must render exactly as the sequential methods do.
+     */
+    private static void testDoubles(ForkJoinPool pool) throws IOException {
+        Random r = new Random();
+        double[] a = new double[N];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = longBitsToDouble(r.nextLong());
+        }
+        for (int len : new int[] {0, 1, 32_767, 32_768, 100_000, N - 2}) {
+            byte[] seq = DoubleToDecimal.toBytes(a, 1, len, ", ",
+                    new ByteBuilder()).toByteArray();
+            byte[] par = ParallelToDecimal.toBytes(a, 1, len, ", ",
+                    new ByteBuilder(), pool).toByteArray();
+            check(Arrays.equals(seq, par), "toBytes(double[])");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelToDecimal.writeTo(a, 1, len, ", ", out, pool);
+            check(Arrays.equals(seq, out.toByteArray()), "writeTo(double[])");
+        }
+    }
+
+    private static void testFloats(ForkJoinPool pool) throws IOException {
+        Random r = new Random();
+        float[] a = new float[N];
+        for (int i = 0; i < a.length; ++i) {
+            a[i] = intBitsToFloat(r.nextInt());
+        }
+        for (int len : new int[] {0, 1, 32_767, 32_768, 100_000, N - 2}) {
+            byte[] seq = FloatToDecimal.toBytes(a, 1, len, "\n",
+                    new ByteBuilder()).toByteArray();
+            byte[] par = ParallelToDecimal.toBytes(a, 1, len, "\n",
+                    new ByteBuilder(), pool).toByteArray();
+            check(Arrays.equals(seq, par), "toBytes(float[])");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ParallelToDecimal.writeTo(a, 1, len, "\n", out, pool);
+            check(Arrays.equals(seq, out.toByteArray()), "writeTo(float[])");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            testDoubles(pool);
+            testFloats(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
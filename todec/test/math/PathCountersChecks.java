@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import math.PathCounters.Path;
+
+import static math.PathCounters.Path.*;
+
+/*
+ * @test
+ * @run main/othervm -Dmath.pathCounters=true math.PathCountersChecks
+ * @author Raffaello Giulietti
+ */
+public class PathCountersChecks {
+
+    private static final int N = 100_000;
+
+    private static void check(boolean claim, String what) {
+        if (!claim) {
+            throw new RuntimeException("PathCounters " + what);
+        }
+    }
+
+    private static void checkDouble(double v, Path... paths) {
+        PathCounters c = PathCounters.forDouble();
+        c.reset();
+        DoubleToDecimal.toString(v);
+        checkPaths(c, v + "", paths);
+    }
+
+    private static void checkFloat(float v, Path... paths) {
+        PathCounters c = PathCounters.forFloat();
+        c.reset();
+        FloatToDecimal.toString(v);
+        checkPaths(c, v + "f", paths);
+    }
+
+    private static void checkPaths(PathCounters c, String v, Path[] paths) {
+        Map<Path, Long> counts = c.counts();
+        for (Path p : paths) {
+            check(counts.remove(p) == 1, "do not count " + p + " for " + v);
+        }
+        for (Map.Entry<Path, Long> e : counts.entrySet()) {
+            check(e.getValue() == 0,
+                    "count " + e.getKey() + " for " + v);
+        }
+    }
+
+    private static void testKnown() {
+        checkDouble(1.0, SHORT_DECIMAL, PLAIN_CHARS);
+        checkDouble(0.001, SHORT_DECIMAL, LEADING_ZEROES_CHARS);
+        checkDouble(1e23, REGULAR_SPACING, SHORTER_DECIMAL,
+                EXPONENT_CHARS);
+        checkDouble(Math.PI, REGULAR_SPACING, SHORTER_DECIMAL, PLAIN_CHARS);
+        checkDouble(0.1 + 0.2, REGULAR_SPACING, BOTH_IN_RV,
+                LEADING_ZEROES_CHARS);
+        checkDouble(0x1p-1000, IRREGULAR_SPACING, EXPONENT_CHARS);
+        checkDouble(Double.MIN_VALUE, REGULAR_SPACING, SUBNORMAL_CASE,
+                EXPONENT_CHARS);
+        checkDouble(0.0);
+        checkDouble(Double.NaN);
+        checkFloat(1.0f, IRREGULAR_SPACING, SHORTER_DECIMAL, PLAIN_CHARS);
+        checkFloat(0.001f, REGULAR_SPACING, SHORTER_DECIMAL,
+                LEADING_ZEROES_CHARS);
+        checkFloat((float) Math.PI, REGULAR_SPACING, BOTH_IN_RV,
+                PLAIN_CHARS);
+        checkFloat(Float.MIN_VALUE, REGULAR_SPACING, SUBNORMAL_CASE,
+                EXPONENT_CHARS);
+        checkFloat(Float.NEGATIVE_INFINITY);
+    }
+
+    /*
+    Each random value takes one selection path and one formatting path,
+    and a good share of them need the tie-break between s and t.
+     */
+    private static void testRandom() {
+        Random r = new Random();
+        PathCounters d = PathCounters.forDouble();
+        PathCounters f = PathCounters.forFloat();
+        d.reset();
+        f.reset();
+        int n = 0;
+        while (n < N) {
+            long bits = r.nextLong();
+            double v = Double.longBitsToDouble(bits);
+            float w = Float.intBitsToFloat((int) bits);
+            if (Double.isFinite(v) && v != 0
+                    && Float.isFinite(w) && w != 0) {
+                DoubleToDecimal.toString(v);
+                FloatToDecimal.toString(w);
+                ++n;
+            }
+        }
+        for (PathCounters c : new PathCounters[] {d, f}) {
+            check(c.count(REGULAR_SPACING) + c.count(IRREGULAR_SPACING)
+                    + c.count(SHORT_DECIMAL) == N,
+                    "miscount the selection paths");
+            check(c.count(PLAIN_CHARS) + c.count(LEADING_ZEROES_CHARS)
+                    + c.count(EXPONENT_CHARS) == N,
+                    "miscount the formatting paths");
+            check(c.count(BOTH_IN_RV) > 0, "miss the tie-breaks");
+        }
+    }
+
+    private static void testMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(PathCounters.registerMBean());
+        check(server.isRegistered(name), "MBean is not registered");
+        try {
+            PathCounters.registerMBean();
+            check(false, "MBean is registered twice");
+        } catch (IllegalStateException expected) {
+        }
+        check((Boolean) server.getAttribute(name, "Enabled"),
+                "MBean reports counting disabled");
+        PathCounters.forDouble().reset();
+        DoubleToDecimal.toString(1.0);
+        TabularData counts =
+                (TabularData) server.getAttribute(name, "DoubleCounts");
+        Object plain = counts.get(new Object[] {PLAIN_CHARS.name()})
+                .get("value");
+        check(plain.equals(1L), "MBean reports wrong counts");
+        server.invoke(name, "reset", null, null);
+        check(PathCounters.forDouble().count(PLAIN_CHARS) == 0,
+                "MBean does not reset");
+    }
+
+    public static void main(String[] args) throws Exception {
+        check(PathCounters.ENABLED, "are disabled, " +
+                "run with -Dmath.pathCounters=true");
+        testKnown();
+        testRandom();
+        testMBean();
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class TableToDecimalChecks {
+
+    private static final byte[] expected =
+            new byte[DoubleToDecimal.MAX_CHARS + 1];
+    private static final byte[] actual =
+            new byte[DoubleToDecimal.MAX_CHARS + 1];
+    private static final ByteBuffer buffer =
+            ByteBuffer.allocate(DoubleToDecimal.MAX_CHARS + 1);
+
+    private static void check(boolean claim, String what) {
+        if (!claim) {
+            throw new RuntimeException("TableToDecimal renders " + what +
+                    " incorrectly");
+        }
+    }
+
+    private static boolean same(int len, int tlen, int blen) {
+        return len == tlen && len == blen
+                && Arrays.equals(expected, 1, 1 + len, actual, 1, 1 + len)
+                && Arrays.equals(expected, 1, 1 + len,
+                        buffer.array(), 1, 1 + len)
+                && buffer.position() == 1 + len;
+    }
+
+    private static void checkHalf(short v) {
+        int len = HalfToDecimal.toBytes(v, expected, 1);
+        int tlen = TableToDecimal.toBytes(v, actual, 1);
+        buffer.clear().position(1);
+        int blen = TableToDecimal.toBytes(v, buffer);
+        check(same(len, tlen, blen), "binary16 0x" +
+                Integer.toHexString(v & 0xFFFF));
+    }
+
+    private static void checkDouble(double v) {
+        int len = DoubleToDecimal.toBytes(v, expected, 1);
+        int tlen = TableToDecimal.toBytes(v, actual, 1);
+        buffer.clear().position(1);
+        int blen = TableToDecimal.toBytes(v, buffer);
+        check(same(len, tlen, blen), "double " + v);
+    }
+
+    private static void testHalves() {
+        for (int i = 0; i < 1 << 16; ++i) {
+            checkHalf((short) i);
+        }
+    }
+
+    private static void testDoubles() {
+        for (int i = -TableToDecimal.MAX_INTEGER - 10;
+                i <= TableToDecimal.MAX_INTEGER + 10; ++i) {
+            checkDouble(i);
+            checkDouble(i + 0.5);
+        }
+        double[] others = {-0.0, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, 1e-300, 1e300,
+                Math.nextUp(1.0), Math.nextDown(1.0), 2.0 * (1L << 40)};
+        for (double v : others) {
+            checkDouble(v);
+        }
+        Random r = new Random();
+        for (int i = 0; i < 100_000; ++i) {
+            checkDouble(Double.longBitsToDouble(r.nextLong()));
+        }
+    }
+
+    /*
+    As for the other renderers, the destinations are left unchanged when
+    there is no room for a rendering.
+     */
+    private static void testOverflow() {
+        byte[] small = new byte[8];
+        try {
+            TableToDecimal.toBytes(-10_000.0, small, 1);
+            check(false, "-10000.0 into 7 bytes");
+        } catch (IndexOutOfBoundsException expected) {
+            check(Arrays.equals(small, new byte[8]), "-10000.0 partially");
+        }
+        ByteBuffer bb = ByteBuffer.allocate(8).position(3);
+        try {
+            TableToDecimal.toBytes((short) 0x7BFF, bb);
+            check(false, "65500.0 into 5 bytes");
+        } catch (BufferOverflowException expected) {
+            check(bb.position() == 3, "65500.0 partially");
+        }
+    }
+
+    public static void main(String[] args) {
+        testHalves();
+        testDoubles();
+        testOverflow();
+    }
+
+}
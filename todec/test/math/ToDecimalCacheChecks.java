@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018-2019, Raffaello Giulietti. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ * This particular file is subject to the "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package math;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.intBitsToFloat;
+
+/*
+ * @test
+ * @author Raffaello Giulietti
+ */
+public class ToDecimalCacheChecks {
+
+    private static final int THREADS = 8;
+    private static final int N = 200_000;
+
+    private static void check(boolean claim, String what) {
+        if (!claim) {
+            throw new RuntimeException("ToDecimalCache: " + what);
+        }
+    }
+
+    private static void testSizes() {
+        check(new ToDecimalCache(1).size() == 2, "size 1");
+        check(new ToDecimalCache(1000).size() == 1024, "size 1000");
+        check(new ToDecimalCache(1024).size() == 1024, "size 1024");
+        for (int size : new int[] {0, -1, (1 << 30) + 1}) {
+            try {
+                new ToDecimalCache(size);
+                check(false, "size " + size + " accepted");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static void testCounters() {
+        ToDecimalCache cache = new ToDecimalCache(16);
+        String s = cache.toString(1.0);
+        check(cache.toString(1.0) == s, "no hit on 1.0");
+        check(cache.toString(-0.0).equals("-0.0"), "-0.0");
+        check(cache.toString(0.0).equals("0.0"), "0.0 hits -0.0");
+        check(cache.toString(1.0F).equals("1.0"), "1.0F");
+        check(cache.toString(1.0F) != s, "1.0F hits 1.0");
+        check(cache.hits() == 2 && cache.misses() == 4, "counters");
+        cache.clear();
+        check(cache.hits() == 0 && cache.misses() == 0, "cleared counters");
+        check(cache.toString(1.0) != s, "cleared slots");
+    }
+
+    /*
+    Many threads rendering values drawn from a small pool, which often
+    collide on the slots of a small cache, must always get the uncached
+    renderings, and every rendering must be counted once.
+     */
+    private static void testConcurrent() throws Exception {
+        ToDecimalCache cache = new ToDecimalCache(64);
+        Random r = new Random();
+        double[] pool = new double[256];
+        for (int i = 0; i < pool.length; ++i) {
+            pool[i] = i % 2 == 0
+                    ? r.nextInt(100) / 100.0
+                    : longBitsToDouble(r.nextLong());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; ++t) {
+                long seed = r.nextLong();
+                futures[t] = executor.submit(() -> {
+                    Random tr = new Random(seed);
+                    for (int i = 0; i < N; ++i) {
+                        double v = pool[tr.nextInt(pool.length)];
+                        float f = (float) v;
+                        check(cache.toString(v).equals(
+                                DoubleToDecimal.toString(v)), "double " + v);
+                        check(cache.toString(f).equals(
+                                FloatToDecimal.toString(f)), "float " + f);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        check(cache.hits() + cache.misses() == 2L * THREADS * N,
+                "counters under contention");
+        check(cache.hits() > 0, "no hits under contention");
+    }
+
+    private static void testRandom() {
+        ToDecimalCache cache = new ToDecimalCache(1 << 12);
+        Random r = new Random();
+        for (int i = 0; i < N; ++i) {
+            long bits = r.nextLong();
+            double v = i % 2 == 0 ? longBitsToDouble(bits) : r.nextInt(1000);
+            float f = intBitsToFloat((int) bits);
+            check(cache.toString(v).equals(DoubleToDecimal.toString(v)),
+                    "double " + v);
+            check(cache.toString(f).equals(FloatToDecimal.toString(f)),
+                    "float " + f);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        testSizes();
+        testCounters();
+        testRandom();
+        testConcurrent();
+    }
+
+}